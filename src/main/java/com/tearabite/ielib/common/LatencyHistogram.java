@@ -0,0 +1,103 @@
+package com.tearabite.ielib.common;
+
+/**
+ * A fixed-bucket latency histogram that records without allocating.
+ * Bucket 0 counts samples under one microsecond and bucket i counts samples in
+ * [2^(i-1), 2^i) microseconds, so percentiles are reported as the upper bound of their bucket.
+ * It is written by one thread; readers on other threads see approximate values while it is being updated.
+ */
+public class LatencyHistogram {
+    public static final int BUCKET_COUNT = 24;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    /**
+     * Records one sample.
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket]++;
+        count++;
+        totalNanos += nanos;
+        lastNanos = nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Clears every sample.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        lastNanos = 0;
+    }
+
+    /**
+     * @return the number of recorded samples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the most recent sample in nanoseconds
+     */
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    /**
+     * @return the largest sample in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return the mean of every sample in nanoseconds, or 0 if there are none
+     */
+    public double getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / (double) count;
+    }
+
+    /**
+     * @return the number of samples in a bucket
+     */
+    public long getBucketCount(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * Returns an upper bound of the given percentile.
+     * @param percentile the percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count;
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(maxNanos, (1L << i) * 1000);
+            }
+        }
+        return maxNanos;
+    }
+}
@@ -0,0 +1,58 @@
+package com.tearabite.ielib.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A lock-free triple buffer for handing values from one producer thread to one consumer thread.
+ * The producer fills the back slot and publishes it, the consumer reads the front slot, and the two
+ * swap through a shared middle slot with a single atomic operation. Neither side ever waits or
+ * allocates, and the consumer never sees a slot the producer is still writing.
+ * @param <T> the type of the slots, which are allocated once and reused
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final Object[] slots;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    /**
+     * @param factory creates each of the three slots
+     */
+    public TripleBuffer(Supplier<T> factory) {
+        this.slots = new Object[] { factory.get(), factory.get(), factory.get() };
+    }
+
+    /**
+     * Returns the slot the producer may write. Only call this from the producer thread.
+     * @return the back slot
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Makes the back slot the newest value and gives the producer a new back slot.
+     * Only call this from the producer thread.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the newest published slot. Its contents do not change until the next call.
+     * Only call this from the consumer thread.
+     * @return the front slot
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) slots[front];
+    }
+}
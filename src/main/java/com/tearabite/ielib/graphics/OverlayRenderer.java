@@ -0,0 +1,225 @@
+package com.tearabite.ielib.graphics;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Batches overlay shapes given in frame pixels and draws them onto a canvas in a few calls.
+ * Call {@link #begin(float, float)} with the scales passed to onDrawFrame, add shapes, then call
+ * {@link #flush(Canvas)}. Coordinates are scaled from bitmap to canvas pixels as they are added,
+ * and line widths are scaled by the canvas density. Lines and points are kept in float buffers that
+ * only grow, and labels in a char buffer, so drawing does not allocate once the buffers are big enough.
+ * Paints are created on the first flush.
+ */
+public class OverlayRenderer {
+    private static final float LABEL_OFFSET = 4;
+
+    /**
+     * The color of lines and points
+     */
+    @Getter @Setter private int color = Color.WHITE;
+
+    /**
+     * The color of labels
+     */
+    @Getter @Setter private int labelColor = Color.WHITE;
+
+    /**
+     * The width of lines in density-independent pixels
+     */
+    @Getter @Setter private float strokeWidth = 2;
+
+    /**
+     * The diameter of points in density-independent pixels
+     */
+    @Getter @Setter private float pointSize = 10;
+
+    /**
+     * The height of label text in density-independent pixels
+     */
+    @Getter @Setter private float textSize = 14;
+
+    private float scale = 1;
+    private float density = 1;
+    private float[] lines = new float[64];
+    private int lineFloats;
+    private float[] points = new float[16];
+    private int pointFloats;
+    private char[] labels = new char[64];
+    private float[] labelPositions = new float[16];
+    private int[] labelEnds = new int[8];
+    private int labelCount;
+    private int labelChars;
+    private Paint linePaint;
+    private Paint pointPaint;
+    private Paint textPaint;
+
+    /**
+     * Clears the batch and sets the scales for the shapes added next.
+     * @param scaleBmpPxToCanvasPx the scale from frame pixels to canvas pixels, as passed to onDrawFrame
+     * @param scaleCanvasDensity the canvas density, as passed to onDrawFrame
+     */
+    public void begin(float scaleBmpPxToCanvasPx, float scaleCanvasDensity) {
+        scale = scaleBmpPxToCanvasPx;
+        density = scaleCanvasDensity;
+        lineFloats = 0;
+        pointFloats = 0;
+        labelCount = 0;
+        labelChars = 0;
+    }
+
+    /**
+     * Adds a line between two points in frame pixels.
+     */
+    public void addLine(float x1, float y1, float x2, float y2) {
+        if (lines.length < lineFloats + 4) {
+            lines = grow(lines, lineFloats + 4);
+        }
+        lines[lineFloats++] = x1 * scale;
+        lines[lineFloats++] = y1 * scale;
+        lines[lineFloats++] = x2 * scale;
+        lines[lineFloats++] = y2 * scale;
+    }
+
+    /**
+     * Adds the outline of a rectangle in frame pixels.
+     */
+    public void addRect(float x, float y, float width, float height) {
+        float right = x + width;
+        float bottom = y + height;
+        addLine(x, y, right, y);
+        addLine(right, y, right, bottom);
+        addLine(right, bottom, x, bottom);
+        addLine(x, bottom, x, y);
+    }
+
+    /**
+     * Adds a dot at a point in frame pixels.
+     */
+    public void addPoint(float x, float y) {
+        if (points.length < pointFloats + 2) {
+            points = grow(points, pointFloats + 2);
+        }
+        points[pointFloats++] = x * scale;
+        points[pointFloats++] = y * scale;
+    }
+
+    /**
+     * Adds a number as a label whose lower left corner is just above and right of a point in frame pixels.
+     */
+    public void addLabel(int value, float x, float y) {
+        int digits = 1;
+        for (int rest = Math.abs(value / 10); rest > 0; rest /= 10) {
+            digits++;
+        }
+        int length = digits + (value < 0 ? 1 : 0);
+        if (labels.length < labelChars + length) {
+            char[] grown = new char[Math.max(labels.length * 2, labelChars + length)];
+            System.arraycopy(labels, 0, grown, 0, labelChars);
+            labels = grown;
+        }
+        if (labelEnds.length <= labelCount) {
+            int[] grownEnds = new int[labelEnds.length * 2];
+            System.arraycopy(labelEnds, 0, grownEnds, 0, labelCount);
+            labelEnds = grownEnds;
+            labelPositions = grow(labelPositions, labelEnds.length * 2);
+        }
+
+        // Write the digits backwards, working with a non-positive value so Integer.MIN_VALUE works too
+        int end = labelChars + length;
+        int remaining = value > 0 ? -value : value;
+        for (int i = end - 1; i >= end - digits; i--) {
+            labels[i] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        }
+        if (value < 0) {
+            labels[labelChars] = '-';
+        }
+
+        labelPositions[labelCount * 2] = x * scale + LABEL_OFFSET * density;
+        labelPositions[labelCount * 2 + 1] = y * scale - LABEL_OFFSET * density;
+        labelEnds[labelCount++] = end;
+        labelChars = end;
+    }
+
+    /**
+     * Draws everything added since {@link #begin(float, float)} with one call per kind of shape plus one per label.
+     */
+    public void flush(Canvas canvas) {
+        if (linePaint == null) {
+            linePaint = new LinePaint(color);
+            pointPaint = new LinePaint(color);
+            textPaint = new LinePaint(labelColor);
+        }
+
+        if (lineFloats > 0) {
+            linePaint.setColor(color);
+            linePaint.setStrokeWidth(strokeWidth * density);
+            canvas.drawLines(lines, 0, lineFloats, linePaint);
+        }
+        if (pointFloats > 0) {
+            pointPaint.setColor(color);
+            pointPaint.setStrokeWidth(pointSize * density);
+            canvas.drawPoints(points, 0, pointFloats, pointPaint);
+        }
+        if (labelCount > 0) {
+            textPaint.setColor(labelColor);
+            textPaint.setTextSize(textSize * density);
+            int start = 0;
+            for (int i = 0; i < labelCount; i++) {
+                canvas.drawText(labels, start, labelEnds[i] - start, labelPositions[i * 2], labelPositions[i * 2 + 1], textPaint);
+                start = labelEnds[i];
+            }
+        }
+
+        lineFloats = 0;
+        pointFloats = 0;
+        labelCount = 0;
+        labelChars = 0;
+    }
+
+    /**
+     * @return the number of line coordinates waiting to be drawn, four per line
+     */
+    public int getLineFloatCount() {
+        return lineFloats;
+    }
+
+    /**
+     * @return the number of point coordinates waiting to be drawn, two per point
+     */
+    public int getPointFloatCount() {
+        return pointFloats;
+    }
+
+    /**
+     * @return the number of labels waiting to be drawn
+     */
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Copies the line and point coordinates waiting to be drawn, in canvas pixels.
+     * @return out
+     */
+    public float[] getLineFloats(float[] out) {
+        System.arraycopy(lines, 0, out, 0, lineFloats);
+        return out;
+    }
+
+    public float[] getPointFloats(float[] out) {
+        System.arraycopy(points, 0, out, 0, pointFloats);
+        return out;
+    }
+
+    private static float[] grow(float[] buffer, int needed) {
+        float[] grown = new float[Math.max(buffer.length * 2, needed)];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+}
@@ -5,11 +5,14 @@ import com.acmerobotics.roadrunner.geometry.Pose2d;
 import org.firstinspires.ftc.robotcore.external.matrices.VectorF;
 import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
 import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagLibrary;
+import org.firstinspires.ftc.vision.apriltag.AprilTagMetadata;
 import org.firstinspires.ftc.vision.apriltag.AprilTagPoseFtc;
 
 import java.security.InvalidParameterException;
+import java.util.List;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -17,8 +20,6 @@ import lombok.Setter;
 
 @Getter
 @NoArgsConstructor
-@AllArgsConstructor
-@Builder(toBuilder = true)
 public class AprilTagPoseEstimator extends AprilTagPoseEstimatorCore {
 
     /*
@@ -29,18 +30,96 @@ public class AprilTagPoseEstimator extends AprilTagPoseEstimatorCore {
     * https://www.desmos.com/calculator/n2iyatwssg
      */
 
-    @Setter private Pose2d robotOffset;
+    private Pose2d robotOffset;
+
+    /**
+     * The tags whose field poses are precomputed, so detections of them don't need metadata
+     */
+    private AprilTagLibrary tagLibrary;
+
+    /**
+     * The range in inches at which a head-on tag has the base position and heading uncertainty
+     */
+    @Setter private double referenceRange = 24;
+
+    /**
+     * The standard deviation in inches of a position estimate from a head-on tag at the reference range
+     */
+    @Setter private double positionSigma = 1;
+
+    /**
+     * The standard deviation in radians of a heading estimate from a head-on tag at the reference range
+     */
+    @Setter private double headingSigma = Math.toRadians(2);
+
+    /**
+     * How far in inches a tag's position estimate may be from the consensus before it is rejected
+     */
+    @Setter private double maxPositionDeviation = 6;
+
+    /**
+     * How far in radians a tag's heading estimate may be from the consensus before it is rejected
+     */
+    @Setter private double maxHeadingDeviation = Math.toRadians(15);
+
+    // Field pose of each tag in tagLibrary, indexed by tag id. The relative sine and cosine are of the
+    // tag's heading less the offset heading, so these are rebuilt whenever robotOffset changes.
+    @Getter(AccessLevel.NONE) private boolean[] tagKnown = new boolean[0];
+    @Getter(AccessLevel.NONE) private double[] tagX = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagY = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagSin = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagCos = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagFieldHeading = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagRelativeSin = new double[0];
+    @Getter(AccessLevel.NONE) private double[] tagRelativeCos = new double[0];
+    @Getter(AccessLevel.NONE) private double offsetX;
+    @Getter(AccessLevel.NONE) private double offsetY;
+    @Getter(AccessLevel.NONE) private double offsetHeading;
+
+    // Reused by the single and fused Pose2d estimates, so an estimator is used from one thread at a time
+    @Getter(AccessLevel.NONE) private final double[] pose = new double[3];
+    @Getter(AccessLevel.NONE) private double[] poses = new double[0];
+    @Getter(AccessLevel.NONE) private double[] positionVariances = new double[0];
+    @Getter(AccessLevel.NONE) private double[] headingVariances = new double[0];
+
+    public AprilTagPoseEstimator(Pose2d robotOffset) {
+        this(robotOffset, null);
+    }
+
+    @Builder(toBuilder = true)
+    public AprilTagPoseEstimator(Pose2d robotOffset, AprilTagLibrary tagLibrary) {
+        this.robotOffset = robotOffset;
+        this.tagLibrary = tagLibrary;
+        buildTagTable();
+    }
+
+    public void setRobotOffset(Pose2d robotOffset) {
+        this.robotOffset = robotOffset;
+        buildTagTable();
+    }
+
+    public void setTagLibrary(AprilTagLibrary tagLibrary) {
+        this.tagLibrary = tagLibrary;
+        buildTagTable();
+    }
 
     /**
      * Estimates the pose of the robot using the AprilTagDetection object.
+     * Tags in the tag library use their precomputed field pose, even if the detection has its own metadata.
+     * Other tags use the metadata in the detection.
      * @param detection The AprilTagDetection object
      * @return The estimated pose of the robot
      */
     public Pose2d estimatePose(AprilTagDetection detection) {
-        if (detection == null || detection.metadata == null || detection.metadata.fieldPosition == null || detection.ftcPose == null) {
+        if (!isUsable(detection)) {
             throw new InvalidParameterException();
         }
 
+        if (isCached(detection.id)) {
+            estimatePose(detection, pose, 0);
+            return new Pose2d(pose[0], pose[1], pose[2]);
+        }
+
         AprilTagPoseFtc ftcPose = detection.ftcPose;
         VectorF fieldPosition = detection.metadata.fieldPosition;
         Quaternion fieldOrientation = detection.metadata.fieldOrientation;
@@ -56,4 +135,295 @@ public class AprilTagPoseEstimator extends AprilTagPoseEstimatorCore {
                 fieldOrientation.w,
                 this.robotOffset);
     }
+
+    /**
+     * Estimates the pose of the robot without allocating. The tag's field pose is chosen the same way as
+     * in {@link #estimatePose(AprilTagDetection)}, so the library wins over the detection's metadata.
+     * @param detection The AprilTagDetection object
+     * @param out Receives x, y and heading at out[offset], out[offset + 1] and out[offset + 2]
+     * @param offset The index in out to write the pose at
+     */
+    public void estimatePose(AprilTagDetection detection, double[] out, int offset) {
+        if (!isUsable(detection)) {
+            throw new InvalidParameterException();
+        }
+
+        int id = detection.id;
+        if (isCached(id)) {
+            estimatePose(detection.ftcPose,
+                    tagX[id], tagY[id], tagSin[id], tagCos[id],
+                    tagFieldHeading[id], tagRelativeSin[id], tagRelativeCos[id],
+                    out, offset);
+            return;
+        }
+
+        VectorF fieldPosition = detection.metadata.fieldPosition;
+        double tagHeading = tagHeading(detection.metadata.fieldOrientation);
+        double relativeHeading = tagHeading - offsetHeading;
+        estimatePose(detection.ftcPose,
+                fieldPosition.get(0), fieldPosition.get(1), Math.sin(tagHeading), Math.cos(tagHeading),
+                tagHeading, Math.sin(relativeHeading), Math.cos(relativeHeading),
+                out, offset);
+    }
+
+    /**
+     * Estimates the pose of the robot without allocating.
+     * @param detection The AprilTagDetection object
+     * @param out Receives x, y and heading at out[0], out[1] and out[2]
+     */
+    public void estimatePose(AprilTagDetection detection, double[] out) {
+        estimatePose(detection, out, 0);
+    }
+
+    /**
+     * Estimates a pose for every usable detection without allocating.
+     * Detections without a pose, or without field metadata for a tag outside the library, are skipped.
+     * @param detections The AprilTagDetection objects
+     * @param out Receives consecutive x, y, heading triples, so it needs 3 entries per detection
+     * @return The number of poses written
+     */
+    public int estimatePoses(List<AprilTagDetection> detections, double[] out) {
+        int count = 0;
+        for (int i = 0; i < detections.size(); i++) {
+            AprilTagDetection detection = detections.get(i);
+            if (isUsable(detection)) {
+                estimatePose(detection, out, count * 3);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The primitive form of the estimate, following the same conventions as the Desmos graph.
+     * The camera's field heading is the tag's heading plus the yaw, the camera sits range away
+     * from the tag along the camera heading plus the bearing, and the robot offset is rotated
+     * by the camera heading less the offset heading. The robot heading is the tag's heading plus
+     * the offset heading less the yaw, so it turns with the field like the position does.
+     * Everything about the tag is passed in precomputed, so only the camera-relative angles need trigonometry.
+     */
+    private void estimatePose(AprilTagPoseFtc ftcPose,
+                              double tagX, double tagY, double tagSin, double tagCos,
+                              double tagHeading, double relativeSin, double relativeCos,
+                              double[] out, int offset) {
+        double yaw = Math.toRadians(ftcPose.yaw);
+        double toTag = yaw + Math.toRadians(ftcPose.bearing);
+        double yawSin = Math.sin(yaw);
+        double yawCos = Math.cos(yaw);
+        double toTagSin = Math.sin(toTag);
+        double toTagCos = Math.cos(toTag);
+
+        double cameraX = tagX - ftcPose.range * (tagCos * toTagCos - tagSin * toTagSin);
+        double cameraY = tagY - ftcPose.range * (tagSin * toTagCos + tagCos * toTagSin);
+
+        double cos = relativeCos * yawCos - relativeSin * yawSin;
+        double sin = relativeSin * yawCos + relativeCos * yawSin;
+
+        out[offset] = cameraX + offsetX * cos - offsetY * sin;
+        out[offset + 1] = cameraY + offsetX * sin + offsetY * cos;
+        out[offset + 2] = tagHeading + offsetHeading - yaw;
+    }
+
+    /**
+     * Precomputes the field pose of every tag in the library, relative to the current robot offset.
+     */
+    private void buildTagTable() {
+        offsetX = robotOffset == null ? 0 : robotOffset.getX();
+        offsetY = robotOffset == null ? 0 : robotOffset.getY();
+        offsetHeading = robotOffset == null ? 0 : robotOffset.getHeading();
+
+        AprilTagMetadata[] tags = tagLibrary == null ? new AprilTagMetadata[0] : tagLibrary.getAllTags();
+        int size = 0;
+        for (AprilTagMetadata tag : tags) {
+            if (tag.id >= 0 && tag.fieldPosition != null && tag.fieldOrientation != null) {
+                size = Math.max(size, tag.id + 1);
+            }
+        }
+
+        tagKnown = new boolean[size];
+        tagX = new double[size];
+        tagY = new double[size];
+        tagSin = new double[size];
+        tagCos = new double[size];
+        tagFieldHeading = new double[size];
+        tagRelativeSin = new double[size];
+        tagRelativeCos = new double[size];
+        for (AprilTagMetadata tag : tags) {
+            if (tag.id < 0 || tag.fieldPosition == null || tag.fieldOrientation == null) {
+                continue;
+            }
+
+            int id = tag.id;
+            double heading = tagHeading(tag.fieldOrientation);
+            tagKnown[id] = true;
+            tagX[id] = tag.fieldPosition.get(0);
+            tagY[id] = tag.fieldPosition.get(1);
+            tagSin[id] = Math.sin(heading);
+            tagCos[id] = Math.cos(heading);
+            tagFieldHeading[id] = heading;
+            tagRelativeSin[id] = Math.sin(heading - offsetHeading);
+            tagRelativeCos[id] = Math.cos(heading - offsetHeading);
+        }
+    }
+
+    private boolean isCached(int id) {
+        return id >= 0 && id < tagKnown.length && tagKnown[id];
+    }
+
+    /**
+     * @return The field heading the tag faces, from the direction of its z axis
+     */
+    private static double tagHeading(Quaternion q) {
+        return Math.atan2(2 * (q.y * q.z - q.w * q.x), 2 * (q.x * q.z + q.w * q.y));
+    }
+
+    /**
+     * Estimates the pose of the robot from several AprilTag detections at once.
+     * Each tag is weighted by the inverse of its expected variance, which grows with range and
+     * with how obliquely the tag is seen. Tags that disagree with the largest group of agreeing
+     * tags are rejected as outliers, and headings are averaged on the circle so that estimates
+     * either side of +/-180 degrees fuse correctly.
+     * Detections without a pose, or without field metadata for a tag outside the library, are skipped.
+     * @param detections The AprilTagDetection objects
+     * @return The fused estimate, or null if none of the detections could be used
+     */
+    public FusedPoseEstimate estimatePose(List<AprilTagDetection> detections) {
+        if (detections == null) {
+            throw new InvalidParameterException();
+        }
+
+        if (positionVariances.length < detections.size()) {
+            poses = new double[detections.size() * 3];
+            positionVariances = new double[detections.size()];
+            headingVariances = new double[detections.size()];
+        }
+
+        int n = 0;
+        for (int i = 0; i < detections.size(); i++) {
+            AprilTagDetection detection = detections.get(i);
+            if (!isUsable(detection)) {
+                continue;
+            }
+
+            double scale = varianceScale(detection.ftcPose);
+            estimatePose(detection, poses, n * 3);
+            positionVariances[n] = positionSigma * positionSigma * scale;
+            headingVariances[n] = headingSigma * headingSigma * scale;
+            n++;
+        }
+        if (n == 0) {
+            return null;
+        }
+
+        // Use the estimate with the most agreeing weight behind it as the consensus
+        int consensus = 0;
+        double bestSupport = -1;
+        for (int i = 0; i < n; i++) {
+            double support = 0;
+            for (int j = 0; j < n; j++) {
+                if (agrees(i, j)) {
+                    support += 1 / positionVariances[j];
+                }
+            }
+            if (support > bestSupport) {
+                bestSupport = support;
+                consensus = i;
+            }
+        }
+
+        double positionWeight = 0, headingWeight = 0;
+        double x = 0, y = 0, sin = 0, cos = 0;
+        int used = 0;
+        for (int i = 0; i < n; i++) {
+            if (!agrees(consensus, i)) {
+                continue;
+            }
+
+            double wp = 1 / positionVariances[i];
+            double wh = 1 / headingVariances[i];
+            positionWeight += wp;
+            headingWeight += wh;
+            x += wp * poses[i * 3];
+            y += wp * poses[i * 3 + 1];
+            sin += wh * Math.sin(poses[i * 3 + 2]);
+            cos += wh * Math.cos(poses[i * 3 + 2]);
+            used++;
+        }
+        x /= positionWeight;
+        y /= positionWeight;
+        double heading = Math.atan2(sin, cos);
+
+        // The variance is the larger of the measurement variance and the spread of the inliers
+        double spreadX = 0, spreadY = 0, spreadHeading = 0;
+        for (int i = 0; i < n; i++) {
+            if (!agrees(consensus, i)) {
+                continue;
+            }
+
+            double wp = 1 / positionVariances[i];
+            double wh = 1 / headingVariances[i];
+            double dX = poses[i * 3] - x;
+            double dY = poses[i * 3 + 1] - y;
+            double dHeading = angleDifference(poses[i * 3 + 2], heading);
+            spreadX += wp * dX * dX;
+            spreadY += wp * dY * dY;
+            spreadHeading += wh * dHeading * dHeading;
+        }
+        double varianceX = Math.max(1 / positionWeight, spreadX / positionWeight);
+        double varianceY = Math.max(1 / positionWeight, spreadY / positionWeight);
+        double varianceHeading = Math.max(1 / headingWeight, spreadHeading / headingWeight);
+
+        double inlierFraction = used / (double) n;
+        double positionError = Math.sqrt(varianceX + varianceY);
+        double confidence = inlierFraction / (1 + positionError / maxPositionDeviation);
+
+        return new FusedPoseEstimate(
+                new Pose2d(x, y, heading),
+                confidence,
+                varianceX,
+                varianceY,
+                varianceHeading,
+                used,
+                n - used);
+    }
+
+    private boolean isUsable(AprilTagDetection detection) {
+        return detection != null
+                && detection.ftcPose != null
+                && (isCached(detection.id)
+                        || detection.metadata != null
+                                && detection.metadata.fieldPosition != null
+                                && detection.metadata.fieldOrientation != null);
+    }
+
+    /**
+     * Returns how much larger than the base variance a tag's variance is expected to be.
+     * Error grows with the square of the range and as the tag is seen more obliquely.
+     */
+    private double varianceScale(AprilTagPoseFtc ftcPose) {
+        double rangeRatio = ftcPose.range / referenceRange;
+        double cosYaw = Math.cos(Math.toRadians(ftcPose.yaw));
+        return (1 + rangeRatio * rangeRatio) / Math.max(0.05, cosYaw * cosYaw);
+    }
+
+    /**
+     * @return Whether the i-th and j-th poses in {@link #poses} are within the allowed deviations
+     */
+    private boolean agrees(int i, int j) {
+        return Math.hypot(poses[i * 3] - poses[j * 3], poses[i * 3 + 1] - poses[j * 3 + 1]) <= maxPositionDeviation
+                && Math.abs(angleDifference(poses[i * 3 + 2], poses[j * 3 + 2])) <= maxHeadingDeviation;
+    }
+
+    /**
+     * @return a - b wrapped into [-pi, pi)
+     */
+    static double angleDifference(double a, double b) {
+        double difference = (a - b) % (2 * Math.PI);
+        if (difference >= Math.PI) {
+            difference -= 2 * Math.PI;
+        } else if (difference < -Math.PI) {
+            difference += 2 * Math.PI;
+        }
+        return difference;
+    }
 }
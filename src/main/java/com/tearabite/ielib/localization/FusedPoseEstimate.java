@@ -0,0 +1,48 @@
+package com.tearabite.ielib.localization;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The result of fusing the pose estimates of several AprilTag detections.
+ */
+@Getter
+@AllArgsConstructor
+public class FusedPoseEstimate {
+    /**
+     * The weighted mean pose of the tags that agreed with each other
+     */
+    private final Pose2d pose;
+
+    /**
+     * How much the estimate can be trusted, from 0 (not at all) to 1
+     */
+    private final double confidence;
+
+    /**
+     * The variance of the x estimate in square inches
+     */
+    private final double varianceX;
+
+    /**
+     * The variance of the y estimate in square inches
+     */
+    private final double varianceY;
+
+    /**
+     * The variance of the heading estimate in square radians
+     */
+    private final double varianceHeading;
+
+    /**
+     * The number of tags that were fused into the pose
+     */
+    private final int tagsUsed;
+
+    /**
+     * The number of usable tags that were rejected as outliers
+     */
+    private final int tagsRejected;
+}
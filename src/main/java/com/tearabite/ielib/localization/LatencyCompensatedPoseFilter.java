@@ -0,0 +1,184 @@
+package com.tearabite.ielib.localization;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Blends delayed vision poses into odometry without making the pose jump.
+ * The filter keeps a rigid correction (a rotation and a translation) from the odometry frame to the
+ * field. When a vision pose arrives, it is compared against the corrected odometry pose at the moment
+ * the frame was captured, not the pose now, and the correction is moved part of the way towards it.
+ * The current pose is the newest odometry pose with the correction applied, so the robot's motion
+ * since the capture is replayed on top of the vision measurement.
+ * Vision poses must use the same field frame and heading convention as the odometry.
+ * It records and filters without allocating, but is not thread-safe; call it from the loop thread.
+ */
+@Getter
+public class LatencyCompensatedPoseFilter {
+    public static final int DEFAULT_HISTORY_CAPACITY = 100;
+
+    /**
+     * The fraction of a position error removed by each full-confidence vision pose
+     */
+    @Setter private double positionGain = 0.3;
+
+    /**
+     * The fraction of a heading error removed by each full-confidence vision pose
+     */
+    @Setter private double headingGain = 0.3;
+
+    /**
+     * The rotation and translation taking odometry poses onto the field
+     */
+    private double correctionX;
+    private double correctionY;
+    private double correctionHeading;
+
+    /**
+     * Whether a vision pose has been applied yet. The first one sets the correction outright.
+     */
+    private boolean initialized;
+
+    private long acceptedMeasurements;
+
+    /**
+     * Vision poses that were dropped because their capture time was outside the odometry history
+     */
+    private long rejectedMeasurements;
+
+    @Getter(AccessLevel.NONE) private final PoseHistory odometry;
+    @Getter(AccessLevel.NONE) private final double[] odometryPose = new double[3];
+    @Getter(AccessLevel.NONE) private final double[] visionPose = new double[3];
+
+    public LatencyCompensatedPoseFilter() {
+        this(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * @param historyCapacity the number of odometry poses kept, which must cover the longest vision latency
+     */
+    public LatencyCompensatedPoseFilter(int historyCapacity) {
+        this.odometry = new PoseHistory(historyCapacity);
+    }
+
+    /**
+     * Records the latest odometry pose. Call this every loop.
+     * @param timeNanos when the pose was measured, on the System.nanoTime clock
+     */
+    public void updateOdometry(long timeNanos, double x, double y, double heading) {
+        odometry.add(timeNanos, x, y, heading);
+    }
+
+    public void updateOdometry(long timeNanos, Pose2d pose) {
+        updateOdometry(timeNanos, pose.getX(), pose.getY(), pose.getHeading());
+    }
+
+    /**
+     * Blends in a vision pose.
+     * @param captureTimeNanos when the frame was captured, on the System.nanoTime clock
+     * @param weight how much the pose is trusted, from 0 to 1, which scales the gains
+     * @return false if the capture time is outside the odometry history and the pose was dropped
+     */
+    public boolean addVisionMeasurement(long captureTimeNanos, double x, double y, double heading, double weight) {
+        if (!odometry.interpolate(captureTimeNanos, odometryPose)) {
+            rejectedMeasurements++;
+            return false;
+        }
+
+        double positionStep = 1;
+        double headingStep = 1;
+        if (initialized) {
+            weight = Math.max(0, Math.min(1, weight));
+            positionStep = positionGain * weight;
+            headingStep = headingGain * weight;
+        }
+
+        // Where the corrected odometry says the robot was when the frame was captured
+        correct(odometryPose, odometryPose);
+        double targetX = odometryPose[0] + positionStep * (x - odometryPose[0]);
+        double targetY = odometryPose[1] + positionStep * (y - odometryPose[1]);
+        correctionHeading += headingStep * AprilTagPoseEstimator.angleDifference(heading, odometryPose[2]);
+
+        // Pick the translation that puts the captured odometry pose on the target under the new rotation
+        odometry.interpolate(captureTimeNanos, odometryPose);
+        double cos = Math.cos(correctionHeading);
+        double sin = Math.sin(correctionHeading);
+        correctionX = targetX - (odometryPose[0] * cos - odometryPose[1] * sin);
+        correctionY = targetY - (odometryPose[0] * sin + odometryPose[1] * cos);
+
+        initialized = true;
+        acceptedMeasurements++;
+        return true;
+    }
+
+    public boolean addVisionMeasurement(long captureTimeNanos, Pose2d pose) {
+        return addVisionMeasurement(captureTimeNanos, pose.getX(), pose.getY(), pose.getHeading(), 1);
+    }
+
+    /**
+     * Blends in a fused estimate, trusting it according to its confidence.
+     */
+    public boolean addVisionMeasurement(long captureTimeNanos, FusedPoseEstimate estimate) {
+        Pose2d pose = estimate.getPose();
+        return addVisionMeasurement(captureTimeNanos, pose.getX(), pose.getY(), pose.getHeading(), estimate.getConfidence());
+    }
+
+    /**
+     * Estimates a pose from the detection and blends it in at the detection's frame acquisition time.
+     */
+    public boolean addVisionMeasurement(AprilTagDetection detection, AprilTagPoseEstimator estimator) {
+        estimator.estimatePose(detection, visionPose);
+        return addVisionMeasurement(detection.frameAcquisitionNanoTime, visionPose[0], visionPose[1], visionPose[2], 1);
+    }
+
+    /**
+     * Copies the current pose, which is the newest odometry pose with the correction applied.
+     * @param out receives x, y and heading
+     * @return false if there is no odometry yet, in which case out is unchanged
+     */
+    public boolean getPose(double[] out) {
+        if (!odometry.getNewest(odometryPose)) {
+            return false;
+        }
+
+        correct(odometryPose, out);
+        return true;
+    }
+
+    /**
+     * @return the current pose, or null if there is no odometry yet
+     */
+    public Pose2d getPose() {
+        if (!odometry.getNewest(odometryPose)) {
+            return null;
+        }
+
+        correct(odometryPose, odometryPose);
+        return new Pose2d(odometryPose[0], odometryPose[1], odometryPose[2]);
+    }
+
+    /**
+     * Forgets the correction so the next vision pose is applied outright. The odometry history is kept.
+     */
+    public void reset() {
+        correctionX = 0;
+        correctionY = 0;
+        correctionHeading = 0;
+        initialized = false;
+    }
+
+    private void correct(double[] pose, double[] out) {
+        double cos = Math.cos(correctionHeading);
+        double sin = Math.sin(correctionHeading);
+        double x = pose[0] * cos - pose[1] * sin + correctionX;
+        double y = pose[0] * sin + pose[1] * cos + correctionY;
+        out[0] = x;
+        out[1] = y;
+        out[2] = pose[2] + correctionHeading;
+    }
+}
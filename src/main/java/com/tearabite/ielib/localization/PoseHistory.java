@@ -0,0 +1,133 @@
+package com.tearabite.ielib.localization;
+
+import java.security.InvalidParameterException;
+
+/**
+ * A fixed-size ring buffer of timestamped poses that records and interpolates without allocating.
+ * Poses must be added in non-decreasing time order; once full, the oldest pose is overwritten.
+ */
+public class PoseHistory {
+    private final long[] times;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] headings;
+    private int head;
+    private int size;
+
+    /**
+     * @param capacity the number of poses kept
+     */
+    public PoseHistory(int capacity) {
+        if (capacity < 2) {
+            throw new InvalidParameterException();
+        }
+
+        times = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    /**
+     * Records a pose, replacing the oldest one if the history is full.
+     * A pose older than the newest one is ignored.
+     * @param timeNanos the time of the pose, on the System.nanoTime clock
+     */
+    public void add(long timeNanos, double x, double y, double heading) {
+        if (size > 0 && timeNanos < getNewestTime()) {
+            return;
+        }
+
+        times[head] = timeNanos;
+        xs[head] = x;
+        ys[head] = y;
+        headings[head] = heading;
+        head = (head + 1) % times.length;
+        size = Math.min(size + 1, times.length);
+    }
+
+    /**
+     * Interpolates the pose at a point in time.
+     * Headings are interpolated along the shorter way around the circle.
+     * @param timeNanos the time to look up, on the System.nanoTime clock
+     * @param out receives x, y and heading
+     * @return false if the time is outside the recorded history, in which case out is unchanged
+     */
+    public boolean interpolate(long timeNanos, double[] out) {
+        if (size == 0 || timeNanos < getOldestTime() || timeNanos > getNewestTime()) {
+            return false;
+        }
+
+        // Walk back from the newest pose, since lookups are usually for recent times
+        int newer = index(size - 1);
+        for (int i = size - 2; i >= 0; i--) {
+            int older = index(i);
+            if (times[older] <= timeNanos) {
+                long span = times[newer] - times[older];
+                double t = span == 0 ? 1 : (timeNanos - times[older]) / (double) span;
+                out[0] = xs[older] + t * (xs[newer] - xs[older]);
+                out[1] = ys[older] + t * (ys[newer] - ys[older]);
+                out[2] = headings[older] + t * AprilTagPoseEstimator.angleDifference(headings[newer], headings[older]);
+                return true;
+            }
+            newer = older;
+        }
+
+        out[0] = xs[newer];
+        out[1] = ys[newer];
+        out[2] = headings[newer];
+        return true;
+    }
+
+    /**
+     * Copies the newest pose.
+     * @param out receives x, y and heading
+     * @return false if the history is empty, in which case out is unchanged
+     */
+    public boolean getNewest(double[] out) {
+        if (size == 0) {
+            return false;
+        }
+
+        int newest = index(size - 1);
+        out[0] = xs[newest];
+        out[1] = ys[newest];
+        out[2] = headings[newest];
+        return true;
+    }
+
+    /**
+     * @return the time of the newest pose, or Long.MIN_VALUE if the history is empty
+     */
+    public long getNewestTime() {
+        return size == 0 ? Long.MIN_VALUE : times[index(size - 1)];
+    }
+
+    /**
+     * @return the time of the oldest pose, or Long.MAX_VALUE if the history is empty
+     */
+    public long getOldestTime() {
+        return size == 0 ? Long.MAX_VALUE : times[index(0)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return times.length;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @param i the position from the oldest pose
+     * @return the slot holding that pose
+     */
+    private int index(int i) {
+        return (head - size + i + times.length) % times.length;
+    }
+}
@@ -0,0 +1,428 @@
+package com.tearabite.ielib.telemetry;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.tearabite.ielib.localization.FusedPoseEstimate;
+import com.tearabite.ielib.vision.DetectionResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+
+/**
+ * Records every detection result and pose estimate of a match to a compact binary file, so what the
+ * vision and localization code saw can be reconstructed afterwards with {@link MatchLogReader}.
+ * <p>
+ * Any thread can record without locks or allocation: records are copied into a preallocated ring
+ * of primitive slots that producers claim with a compare-and-set, and a background thread drains
+ * the ring into a memory-mapped file. When the ring is full new records are dropped and counted
+ * rather than blocking the camera or loop thread.
+ * <p>
+ * The file starts with {@link #MAGIC}, {@link #VERSION}, {@link #RECORD_BYTES} and the number of
+ * records, followed by fixed-size little-endian records: the record sequence, source sequence,
+ * capture time, record time, type, index, id, count and {@link #VALUE_COUNT} doubles.
+ * The file grows in mapped windows and isn't trimmed afterwards, since a file can't be truncated
+ * while it is mapped on every platform. The number of records is written when the log is closed; a log
+ * that wasn't closed has 0 there, and its records end at the first record type of 0.
+ */
+public class MatchLog implements Closeable {
+    public static final int MAGIC = 0x4d4c4549; // "IELM"
+    public static final int VERSION = 1;
+    public static final int VALUE_COUNT = 8;
+    public static final int RECORD_BYTES = 4 * 8 + 4 * 4 + VALUE_COUNT * 8;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int RECORD_COUNT_OFFSET = 12;
+
+    /**
+     * A processed frame. Index is unused, count is the number of detections, and the values are
+     * the frame width, frame height and the time from capture to publication in nanoseconds.
+     */
+    public static final int TYPE_FRAME = 1;
+
+    /**
+     * One detection of a frame. Index is its rank, id its track ID, and the values are the area,
+     * center x and y, and bounding box x, y, width and height in pixels.
+     */
+    public static final int TYPE_DETECTION = 2;
+
+    /**
+     * A pose estimate from one tag. Id is the tag ID, and the values are x, y and heading.
+     */
+    public static final int TYPE_POSE = 3;
+
+    /**
+     * A fused pose estimate. Count is the number of tags used, id the number rejected, and the values
+     * are x, y, heading, confidence and the x, y and heading variances.
+     */
+    public static final int TYPE_FUSED_POSE = 4;
+
+    private static final int LONGS = 4;
+    private static final int INTS = 4;
+    private static final long MAP_BYTES = 4L << 20;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    @Getter private final File file;
+    @Getter private final int capacity;
+
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLongArray slotSequences;
+    private final long[] longs;
+    private final int[] ints;
+    private final double[] values;
+    private final AtomicLong dropped = new AtomicLong();
+    private long head;
+
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private long fileLength;
+    private Thread drainer;
+    private volatile boolean running;
+    private volatile long recordsWritten;
+    @Getter private volatile IOException error;
+
+    /**
+     * @param file the file to write, which is replaced if it exists
+     * @param capacity the number of records the ring holds, rounded up to a power of two
+     */
+    public MatchLog(File file, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.file = file;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slotSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slotSequences.set(i, i);
+        }
+        this.longs = new long[size * LONGS];
+        this.ints = new int[size * INTS];
+        this.values = new double[size * VALUE_COUNT];
+    }
+
+    /**
+     * @param file the file to write, which is replaced if it exists
+     */
+    public MatchLog(File file) {
+        this(file, 8192);
+    }
+
+    /**
+     * Opens the file and starts the thread that writes records to it. Records made before this are kept.
+     */
+    public synchronized void start() throws IOException {
+        if (drainer != null) {
+            return;
+        }
+
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        fileLength = 0;
+        map = null;
+        ensureMapped(FILE_HEADER_BYTES);
+        map.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0);
+        fileLength = FILE_HEADER_BYTES;
+
+        running = true;
+        drainer = new Thread(this::drainLoop, "MatchLog");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Records a frame's result and each of its detections.
+     * @return whether there was room in the ring for all of them
+     */
+    public boolean record(DetectionResult result) {
+        int count = result.getDetectionCount();
+        long start = claim(count + 1);
+        if (start < 0) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        long sequence = result.getSequence();
+        long capture = result.getCaptureTimeNanos();
+        int slot = write(start, TYPE_FRAME, sequence, capture, now, 0, -1, count);
+        values[slot] = result.getFrameWidth();
+        values[slot + 1] = result.getFrameHeight();
+        values[slot + 2] = result.getPublishTimeNanos() - capture;
+        publish(start);
+
+        for (int i = 0; i < count; i++) {
+            long position = start + 1 + i;
+            slot = write(position, TYPE_DETECTION, sequence, capture, now, i, result.getTrackId(i), 0);
+            values[slot] = result.getArea(i);
+            values[slot + 1] = result.getCenterX(i);
+            values[slot + 2] = result.getCenterY(i);
+            values[slot + 3] = result.getBoundingX(i);
+            values[slot + 4] = result.getBoundingY(i);
+            values[slot + 5] = result.getBoundingWidth(i);
+            values[slot + 6] = result.getBoundingHeight(i);
+            publish(position);
+        }
+        return true;
+    }
+
+    /**
+     * Records a pose estimate from one tag, such as one written by AprilTagPoseEstimator.estimatePose(detection, out).
+     * @param sequence the caller's sequence number, such as the frame's
+     * @param tagId the ID of the tag, or -1 if not from a single tag
+     * @return whether there was room in the ring
+     */
+    public boolean recordPose(long sequence, long captureTimeNanos, int tagId, double x, double y, double heading) {
+        long position = claim(1);
+        if (position < 0) {
+            return false;
+        }
+
+        int slot = write(position, TYPE_POSE, sequence, captureTimeNanos, System.nanoTime(), 0, tagId, 1);
+        values[slot] = x;
+        values[slot + 1] = y;
+        values[slot + 2] = heading;
+        publish(position);
+        return true;
+    }
+
+    /**
+     * @see #recordPose(long, long, int, double, double, double)
+     */
+    public boolean recordPose(long sequence, long captureTimeNanos, int tagId, Pose2d pose) {
+        return recordPose(sequence, captureTimeNanos, tagId, pose.getX(), pose.getY(), pose.getHeading());
+    }
+
+    /**
+     * Records the poses written by AprilTagPoseEstimator.estimatePoses, three values each.
+     * @param tagIds the ID of each pose's tag, in the same order
+     * @return whether there was room in the ring for all of them
+     */
+    public boolean recordPoses(long sequence, long captureTimeNanos, int[] tagIds, double[] poses, int count) {
+        long start = claim(count);
+        if (start < 0) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long position = start + i;
+            int slot = write(position, TYPE_POSE, sequence, captureTimeNanos, now, i, tagIds[i], count);
+            values[slot] = poses[i * 3];
+            values[slot + 1] = poses[i * 3 + 1];
+            values[slot + 2] = poses[i * 3 + 2];
+            publish(position);
+        }
+        return true;
+    }
+
+    /**
+     * Records a fused pose estimate.
+     * @return whether there was room in the ring
+     */
+    public boolean recordPose(long sequence, long captureTimeNanos, FusedPoseEstimate estimate) {
+        long position = claim(1);
+        if (position < 0) {
+            return false;
+        }
+
+        Pose2d pose = estimate.getPose();
+        int slot = write(position, TYPE_FUSED_POSE, sequence, captureTimeNanos, System.nanoTime(), 0,
+                estimate.getTagsRejected(), estimate.getTagsUsed());
+        values[slot] = pose.getX();
+        values[slot + 1] = pose.getY();
+        values[slot + 2] = pose.getHeading();
+        values[slot + 3] = estimate.getConfidence();
+        values[slot + 4] = estimate.getVarianceX();
+        values[slot + 5] = estimate.getVarianceY();
+        values[slot + 6] = estimate.getVarianceHeading();
+        publish(position);
+        return true;
+    }
+
+    /**
+     * @return the number of records dropped because the ring was full
+     */
+    public long getDroppedRecords() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of records written to the file
+     */
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+     * Waits for the drain thread to write every record made so far, forces the mapped window to disk,
+     * writes the number of records into the header and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        Thread stopping = drainer;
+        if (stopping == null) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(stopping);
+        boolean interrupted = false;
+        while (stopping.isAlive()) {
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        drainer = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        FileChannel closing = channel;
+        channel = null;
+        try {
+            if (error == null) {
+                map.force();
+                ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                count.putInt((int) Math.min(recordsWritten, Integer.MAX_VALUE)).flip();
+                while (count.hasRemaining()) {
+                    closing.write(count, RECORD_COUNT_OFFSET + count.position());
+                }
+                closing.force(false);
+            }
+        } finally {
+            map = null;
+            closing.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Claims consecutive slots for a producer. The consumer frees slots in order, so the run is free
+     * when its last slot is.
+     * @return the position of the first slot, or -1 if the ring is full
+     */
+    private long claim(int count) {
+        if (count > capacity) {
+            dropped.addAndGet(count);
+            return -1;
+        }
+
+        while (true) {
+            long position = tail.get();
+            long last = position + count - 1;
+            long available = slotSequences.get((int) (last & mask));
+            if (available < last) {
+                dropped.addAndGet(count);
+                return -1;
+            }
+            if (available == last && tail.compareAndSet(position, position + count)) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Fills a claimed slot's fixed fields and clears its values.
+     * @return the index of the slot's first value
+     */
+    private int write(long position, int type, long sequence, long captureNanos, long recordNanos, int index, int id, int count) {
+        int slot = (int) (position & mask);
+        int l = slot * LONGS;
+        longs[l] = position;
+        longs[l + 1] = sequence;
+        longs[l + 2] = captureNanos;
+        longs[l + 3] = recordNanos;
+        int i = slot * INTS;
+        ints[i] = type;
+        ints[i + 1] = index;
+        ints[i + 2] = id;
+        ints[i + 3] = count;
+        int v = slot * VALUE_COUNT;
+        for (int k = 0; k < VALUE_COUNT; k++) {
+            values[v + k] = 0;
+        }
+        return v;
+    }
+
+    /**
+     * Hands a filled slot to the consumer. The ordered write makes the slot's fields visible first.
+     */
+    private void publish(long position) {
+        slotSequences.lazySet((int) (position & mask), position + 1);
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int drained = drain();
+            if (drained == 0) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes every published record to the file, in order, and frees their slots.
+     * @return the number of records drained
+     */
+    private int drain() {
+        int drained = 0;
+        while (true) {
+            int slot = (int) (head & mask);
+            if (slotSequences.get(slot) != head + 1) {
+                return drained;
+            }
+
+            if (error == null) {
+                try {
+                    writeRecord(slot);
+                    recordsWritten++;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            slotSequences.lazySet(slot, head + capacity);
+            head++;
+            drained++;
+        }
+    }
+
+    private void writeRecord(int slot) throws IOException {
+        ensureMapped(RECORD_BYTES);
+        int l = slot * LONGS;
+        int i = slot * INTS;
+        int v = slot * VALUE_COUNT;
+        map.putLong(longs[l]).putLong(longs[l + 1]).putLong(longs[l + 2]).putLong(longs[l + 3]);
+        map.putInt(ints[i]).putInt(ints[i + 1]).putInt(ints[i + 2]).putInt(ints[i + 3]);
+        for (int k = 0; k < VALUE_COUNT; k++) {
+            map.putDouble(values[v + k]);
+        }
+        fileLength += RECORD_BYTES;
+    }
+
+    /**
+     * Maps the next window of the file when the current one can't fit the given number of bytes.
+     */
+    private void ensureMapped(int bytes) throws IOException {
+        if (map != null && map.remaining() >= bytes) {
+            return;
+        }
+
+        map = channel.map(FileChannel.MapMode.READ_WRITE, fileLength, MAP_BYTES);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,191 @@
+package com.tearabite.ielib.telemetry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import lombok.Getter;
+
+/**
+ * Reads a file written by {@link MatchLog}, one record at a time, and exports it to CSV for plotting.
+ * It only uses the standard library, so it runs on a desktop JVM as well as on the robot:
+ * <pre>
+ * java -cp ielib.jar com.tearabite.ielib.telemetry.MatchLogReader match.log match.csv
+ * </pre>
+ * A log whose writer was cut off, for example by a power loss, is read up to its last complete record.
+ * A closed log is read up to the record count in its header, ignoring the unused end of the file.
+ */
+public class MatchLogReader implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int recordBytes;
+    private final int recordCount;
+    private int recordsRead;
+
+    @Getter private long recordSequence;
+    @Getter private long sourceSequence;
+    @Getter private long captureNanos;
+    @Getter private long recordNanos;
+    @Getter private int type;
+    @Getter private int index;
+    @Getter private int id;
+    @Getter private int count;
+    private final double[] values = new double[MatchLog.VALUE_COUNT];
+
+    public MatchLogReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            long length = this.file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Match logs over 2 GB are not supported");
+            }
+
+            buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (length < MatchLog.FILE_HEADER_BYTES || buffer.getInt() != MatchLog.MAGIC) {
+                throw new IOException("Not a match log: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != MatchLog.VERSION) {
+                throw new IOException("Unsupported match log version " + version);
+            }
+            recordBytes = buffer.getInt();
+            if (recordBytes < MatchLog.RECORD_BYTES) {
+                throw new IOException("Unexpected record size " + recordBytes);
+            }
+            recordCount = buffer.getInt();
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next record into this reader's getters.
+     * @return whether there was another record
+     */
+    public boolean next() {
+        if (buffer.remaining() < recordBytes || (recordCount > 0 && recordsRead >= recordCount)) {
+            return false;
+        }
+
+        int start = buffer.position();
+        int nextType = buffer.getInt(start + 32);
+        if (nextType == 0) {
+            // The rest of the mapped window was never written
+            return false;
+        }
+
+        recordSequence = buffer.getLong();
+        sourceSequence = buffer.getLong();
+        captureNanos = buffer.getLong();
+        recordNanos = buffer.getLong();
+        type = buffer.getInt();
+        index = buffer.getInt();
+        id = buffer.getInt();
+        count = buffer.getInt();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        buffer.position(start + recordBytes);
+        recordsRead++;
+        return true;
+    }
+
+    /**
+     * @param i the index of the value, from 0 to {@link MatchLog#VALUE_COUNT} - 1
+     * @return one of the current record's values, whose meaning depends on its type
+     */
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return the name of the current record's type
+     */
+    public String getTypeName() {
+        return typeName(type);
+    }
+
+    /**
+     * Writes a header and every remaining record as comma-separated values.
+     * The columns are the same for every type; see the MatchLog TYPE_ constants for what the values mean.
+     */
+    public void exportCsv(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        out.print("recordSequence,sourceSequence,captureNanos,recordNanos,type,index,id,count");
+        for (int i = 0; i < values.length; i++) {
+            out.print(",value");
+            out.print(i);
+        }
+        out.println();
+
+        StringBuilder line = new StringBuilder();
+        while (next()) {
+            line.setLength(0);
+            line.append(recordSequence).append(',')
+                    .append(sourceSequence).append(',')
+                    .append(captureNanos).append(',')
+                    .append(recordNanos).append(',')
+                    .append(getTypeName()).append(',')
+                    .append(index).append(',')
+                    .append(id).append(',')
+                    .append(count);
+            for (double value : values) {
+                line.append(',').append(value);
+            }
+            out.println(line);
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Failed to write the CSV");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    static String typeName(int type) {
+        switch (type) {
+            case MatchLog.TYPE_FRAME:
+                return "Frame";
+            case MatchLog.TYPE_DETECTION:
+                return "Detection";
+            case MatchLog.TYPE_POSE:
+                return "Pose";
+            case MatchLog.TYPE_FUSED_POSE:
+                return "FusedPose";
+            default:
+                return Integer.toString(type);
+        }
+    }
+
+    /**
+     * Exports a match log to CSV.
+     * @param args the log file, and the CSV file to write or nothing to print to standard output
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: MatchLogReader <match log> [csv file]");
+            System.exit(1);
+        }
+
+        try (MatchLogReader reader = new MatchLogReader(new File(args[0]));
+             Writer writer = args.length == 2
+                     ? new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8)
+                     : new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+            reader.exportCsv(writer);
+        }
+    }
+}
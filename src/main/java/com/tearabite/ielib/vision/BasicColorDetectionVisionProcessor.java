@@ -1,35 +1,37 @@
 package com.tearabite.ielib.vision;
 
-import static com.tearabite.ielib.graphics.LinePaint.WHITE;
 import static com.tearabite.ielib.vision.FTCColors.FTC_BLUE_RANGE;
 import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_1;
 import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_2;
-import static com.tearabite.ielib.vision.OpenCVUtil.getLargestContour;
 
 import android.graphics.Canvas;
 
+import com.tearabite.ielib.common.TripleBuffer;
 import com.tearabite.ielib.graphics.LinePaint;
 
 import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
 import org.firstinspires.ftc.vision.VisionProcessor;
-import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import lombok.Getter;
 import lombok.Setter;
 
 /**
- * A basic color detection vision processor that detects the largest contour of a specified color
+ * A basic color detection vision processor that detects the largest contour of a specified color.
+ * It can also report the largest several contours by setting {@link #setMaxDetections(int)}.
  */
 public class BasicColorDetectionVisionProcessor implements VisionProcessor {
-    private static final Mat STRUCTURING_ELEMENT = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(5, 5));
-    private static final Point ANCHOR = new Point((STRUCTURING_ELEMENT.cols() / 2f), STRUCTURING_ELEMENT.rows() / 2f);
+    static final Mat STRUCTURING_ELEMENT = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(5, 5));
+    static final Point ANCHOR = new Point((STRUCTURING_ELEMENT.cols() / 2f), STRUCTURING_ELEMENT.rows() / 2f);
+    private static final int ROI_PADDING = 16;
 
     /**
      * The size of the blur kernel
@@ -39,22 +41,134 @@ public class BasicColorDetectionVisionProcessor implements VisionProcessor {
     /**
      * The color ranges to detect
      */
-    @Getter @Setter private ScalarRange[] colorRanges;
+    @Getter private ScalarRange[] colorRanges;
 
     /**
-     * The detection object
+     * How the blurred frame is turned into a mask
      */
-    @Getter private Detection detection;
+    @Getter @Setter private SegmentationMode segmentationMode = SegmentationMode.Hsv;
+
+    /**
+     * How blobs are found in the mask
+     */
+    @Getter @Setter private DetectionMode detectionMode = DetectionMode.Contours;
+
+    /**
+     * Shape filters candidates must pass on top of the area thresholds, or null for none.
+     * The low-resolution candidate search in tracking mode only uses the area thresholds.
+     */
+    @Getter @Setter private ShapeFilterChain shapeFilters;
+
+    /**
+     * The maximum number of detections to report each frame, largest first
+     */
+    @Getter @Setter private int maxDetections = 1;
+
+    /**
+     * Whether to search a downscaled frame and then refine only the region around the last detection
+     */
+    @Getter @Setter private boolean trackingEnabled;
+
+    /**
+     * In tracking mode, search the whole frame at least once every this many frames even while the
+     * track is held, so new blobs are picked up. 0 searches only when the track is lost.
+     */
+    @Getter @Setter private int fullDetectionInterval;
+
+    /**
+     * The number of times the frame is halved with pyrDown before the full-frame search in tracking mode
+     */
+    @Getter @Setter private int pyramidLevels = 1;
+
+    /**
+     * How far the region of interest extends past the tracked bounding box, as a fraction of its size
+     */
+    @Getter @Setter private double roiMargin = 0.5;
 
     /**
      * The number of iterations to erode and dilate the mask
      */
     @Getter @Setter private int erodeDilateIterations = 2;
 
+    /**
+     * The number of horizontal strips a full-frame search is segmented in, each on its own thread.
+     * 0 or 1 segments on the camera thread alone. The detections are the same either way.
+     * Call {@link #close()} once the processor is no longer needed to stop the strip threads.
+     */
+    @Getter @Setter private int parallelStrips;
+
+    /**
+     * Whether to skip frames that look the same as the last processed frame, reusing its detections.
+     * Useful while the scene is static, such as during init, to save CPU and heat.
+     * Skipped frames publish nothing, so {@link #getLatestResult()} keeps the processed frame's
+     * sequence and capture time, and consumers can tell no new measurement was made.
+     */
+    @Getter private boolean frameSkippingEnabled;
+
+    /**
+     * Decides whether a frame changed enough to process. Its threshold and grid can be tuned.
+     */
+    @Getter private final FrameChangeDetector changeDetector = new FrameChangeDetector();
+
+    /**
+     * The most frames in a row that may be skipped before one is processed anyway
+     */
+    @Getter @Setter private int maxConsecutiveSkippedFrames = 30;
+
+    /**
+     * The number of frames skipped because they hadn't changed, since the processor was created
+     */
+    @Getter private volatile long skippedFrames;
+
+    /**
+     * The number of frames skipped since the last processed frame
+     */
+    @Getter private volatile int consecutiveSkippedFrames;
+
+    /**
+     * Gives the detections stable IDs across frames and predicts where they will be in tracking mode.
+     * It is updated on the camera thread; other threads should read the IDs from {@link #getLatestResult()}.
+     */
+    @Getter private final BlobTracker tracker = new BlobTracker();
+
+    /**
+     * Draws the detections in onDrawFrame. Its detail level and colors can be changed.
+     */
+    @Getter private final DetectionOverlay overlay = new DetectionOverlay();
+
+    /**
+     * The per-stage latency statistics, or null when they are disabled
+     */
+    @Getter private VisionStats stats;
+
+    /**
+     * Whether onDrawFrame draws the latency statistics when they are enabled
+     */
+    @Getter @Setter private boolean drawStats;
+
     private final Mat blurred = new Mat();
     private final Mat hsv = new Mat();
     private final Mat mask = new Mat();
     private final Mat tmpMask = new Mat();
+    private final Mat smallBlurred = new Mat();
+    private final Mat smallHsv = new Mat();
+    private final Mat smallMask = new Mat();
+    private final Mat smallTmpMask = new Mat();
+    private Mat[] pyramid = new Mat[0];
+    private final Rect predictedRect = new Rect();
+    private final Rect searchRect = new Rect();
+    private boolean hasTrack;
+    private int framesSinceSearch;
+    private final DetectionPool detectionPool = new DetectionPool();
+    private final TripleBuffer<DetectionResult> results = new TripleBuffer<>(DetectionResult::new);
+    private final TripleBuffer<DetectionResult> drawResults = new TripleBuffer<>(DetectionResult::new);
+    private long sequence;
+    private ColorLookupTable lookupTable;
+    private double minimumAreaThreshold;
+    private double maximumAreaThreshold;
+    private VisionStats frameStats;
+    private DetectionMode frameDetectionMode;
+    private StripSegmenter stripSegmenter;
 
     public BasicColorDetectionVisionProcessor(ScalarRange... colorRanges) {
         this.colorRanges = colorRanges;
@@ -76,66 +190,439 @@ public class BasicColorDetectionVisionProcessor implements VisionProcessor {
 
     @Override
     public void init(int width, int height, CameraCalibration calibration) {
-        this.detection = Detection.builder().frameSize(new Size(width, height)).build();
+        detectionPool.setFrameSize(new Size(width, height));
+        detectionPool.setAreaThresholds(minimumAreaThreshold, maximumAreaThreshold);
+        detectionPool.ensureCapacity(Math.max(1, maxDetections));
     }
 
     @Override
     public Object processFrame(Mat input, long captureTimeNanos) {
-        Imgproc.GaussianBlur(input, blurred, blurSize, 0);
-        Imgproc.cvtColor(blurred, hsv, Imgproc.COLOR_RGB2HSV);
-
-        mask.release();
-        for (ScalarRange colorRange : this.colorRanges) {
-            Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), tmpMask);
-            if (mask.empty() || mask.rows() <= 0) {
-                Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), mask);
+        frameStats = this.stats;
+        frameDetectionMode = this.detectionMode;
+        long frameStart = startTiming();
+
+        if (frameSkippingEnabled && skipFrame(input)) {
+            if (frameStats != null) {
+                frameStats.endFrame(frameStart, captureTimeNanos, System.nanoTime());
             }
-            Core.add(mask, tmpMask, mask);
+            return input;
         }
 
-        Imgproc.erode(mask, mask, STRUCTURING_ELEMENT, ANCHOR, erodeDilateIterations);
-        Imgproc.dilate(mask, mask, STRUCTURING_ELEMENT, ANCHOR, erodeDilateIterations);
+        detectionPool.setAreaThresholds(minimumAreaThreshold, maximumAreaThreshold);
+        detectionPool.setShapeFilters(shapeFilters);
+        if (trackingEnabled) {
+            processFrameTracking(input);
+        } else {
+            hasTrack = false;
+            segmentFrame(input);
+            findContours(mask, 0, 0);
+            selectDetections();
+        }
+        tracker.update(detectionPool.getDetections());
 
-        ArrayList<MatOfPoint> contours = new ArrayList<>();
-        Imgproc.findContours(mask, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        long now = System.nanoTime();
+        publishResult(input, captureTimeNanos, now);
+        if (frameStats != null) {
+            frameStats.endFrame(frameStart, captureTimeNanos, now);
+        }
+        return input;
+    }
 
-        detection.setContour(getLargestContour(contours));
+    /**
+     * Turns the per-stage latency statistics on or off. When they are off no timing is done at all.
+     * @param enabled whether to collect statistics
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            this.stats = null;
+        } else if (this.stats == null) {
+            this.stats = new VisionStats();
+        }
+    }
 
-        return input;
+    /**
+     * The detection object for the largest contour.
+     * It is owned by the camera thread and its contour is released when the next frame replaces it,
+     * so other threads should read {@link #getLatestResult()} instead.
+     * @return the largest detection, or null before init
+     */
+    public Detection getDetection() {
+        return detectionPool.getLargest();
     }
+
+    /**
+     * @return the detections from the last frame, largest first. The list is owned by the camera thread.
+     */
+    public List<Detection> getDetections() {
+        return detectionPool.getDetections();
+    }
+
+    /**
+     * Returns the newest published detection result. The snapshot does not change until this is
+     * called again, so it can be read without locks while the camera thread processes new frames.
+     * Call this from a single thread, normally the opmode loop.
+     * @return the latest result, with a sequence of -1 until the first frame is processed
+     */
+    public DetectionResult getLatestResult() {
+        return results.getFront();
+    }
+
+    /**
+     * @param colorRanges the color ranges to detect
+     */
+    public void setColorRanges(ScalarRange... colorRanges) {
+        this.colorRanges = colorRanges;
+        this.lookupTable = null;
+        this.changeDetector.reset();
+    }
+
+    /**
+     * @param frameSkippingEnabled whether to skip frames that look the same as the last processed frame
+     */
+    public void setFrameSkippingEnabled(boolean frameSkippingEnabled) {
+        this.frameSkippingEnabled = frameSkippingEnabled;
+        this.changeDetector.reset();
+    }
+
+    /**
+     * Stops the threads of the parallel strips and frees their buffers. Call it from the camera thread,
+     * or once frames have stopped arriving, such as when the opmode ends. A later frame with
+     * {@link #parallelStrips} set starts them again.
+     */
+    public void close() {
+        if (stripSegmenter != null) {
+            stripSegmenter.close();
+            stripSegmenter = null;
+        }
+    }
+
+    /**
+     * Decides whether a frame can reuse the last frame's detections.
+     * Every changed frame, and every frame after too many skips, is processed.
+     */
+    private boolean skipFrame(Mat input) {
+        boolean changed = changeDetector.hasChanged(input);
+        if (!changed && consecutiveSkippedFrames < maxConsecutiveSkippedFrames) {
+            skippedFrames++;
+            consecutiveSkippedFrames++;
+            return true;
+        }
+
+        if (!changed) {
+            changeDetector.updateReference();
+        }
+        consecutiveSkippedFrames = 0;
+        return false;
+    }
+
+    /**
+     * Copies the frame's detections into the back slots of the result buffers and publishes them.
+     */
+    private void publishResult(Mat input, long captureTimeNanos, long now) {
+        List<Detection> detections = detectionPool.getDetections();
+        results.getBack().update(sequence, captureTimeNanos, now, input.cols(), input.rows(), detections, tracker, false);
+        results.publish();
+        drawResults.getBack().update(sequence, captureTimeNanos, now, input.cols(), input.rows(), detections, tracker, overlay.needsContours());
+        drawResults.publish();
+        sequence++;
+    }
+
+    /**
+     * Refines only the region where the tracker predicts the detections will be, at full resolution.
+     * The whole frame is searched at full resolution every {@link #fullDetectionInterval} frames, or
+     * sooner if a track goes unmatched. When there is no track, or the track is lost, the whole frame
+     * is searched at a lower resolution and the largest candidate is refined.
+     */
+    private void processFrameTracking(Mat input) {
+        blurred.create(input.rows(), input.cols(), input.type());
+        hsv.create(input.rows(), input.cols(), CvType.CV_8UC3);
+        tmpMask.create(input.rows(), input.cols(), CvType.CV_8UC1);
+        mask.create(input.rows(), input.cols(), CvType.CV_8UC1);
+
+        boolean searchDue = fullDetectionInterval > 0 && framesSinceSearch >= fullDetectionInterval - 1;
+        if (hasTrack && !searchDue && !tracker.hasMissedTracks()) {
+            if (tracker.getPredictedBounds(predictedRect) && refine(input, predictedRect)) {
+                framesSinceSearch++;
+                return;
+            }
+        }
+
+        framesSinceSearch = 0;
+        if (hasTrack) {
+            segmentFrame(input);
+            findContours(mask, 0, 0);
+            selectDetections();
+            hasTrack = detectionPool.getLargest().isValid();
+            return;
+        }
+
+        if (findCandidate(input, searchRect) && refine(input, searchRect)) {
+            return;
+        }
+
+        hasTrack = false;
+        selectDetections();
+    }
+
+    /**
+     * Segments the region around a rect at full resolution and selects detections from it.
+     * Contours are offset so they stay in full-frame pixel coordinates.
+     * @return whether a valid detection was found
+     */
+    private boolean refine(Mat input, Rect around) {
+        int marginX = (int) (around.width * roiMargin) + ROI_PADDING;
+        int marginY = (int) (around.height * roiMargin) + ROI_PADDING;
+        int x = Math.max(0, around.x - marginX);
+        int y = Math.max(0, around.y - marginY);
+        int right = Math.min(input.cols(), around.x + around.width + marginX);
+        int bottom = Math.min(input.rows(), around.y + around.height + marginY);
+        if (right <= x || bottom <= y) {
+            return false;
+        }
+
+        // Work in submats of the full-size buffers so changing the ROI size never reallocates them
+        Mat inputRoi = input.submat(y, bottom, x, right);
+        Mat blurredRoi = blurred.submat(y, bottom, x, right);
+        Mat hsvRoi = hsv.submat(y, bottom, x, right);
+        Mat tmpMaskRoi = tmpMask.submat(y, bottom, x, right);
+        Mat maskRoi = mask.submat(y, bottom, x, right);
+        try {
+            segment(inputRoi, blurredRoi, hsvRoi, tmpMaskRoi, maskRoi);
+            findContours(maskRoi, x, y);
+        } finally {
+            inputRoi.release();
+            blurredRoi.release();
+            hsvRoi.release();
+            tmpMaskRoi.release();
+            maskRoi.release();
+        }
+        selectDetections();
+
+        hasTrack = detectionPool.getLargest().isValid();
+        return hasTrack;
+    }
+
+    /**
+     * Searches a pyramid-downscaled copy of the frame for the largest candidate within the area thresholds.
+     * @param result set to the candidate's bounding box in full-resolution pixels
+     * @return whether a candidate was found
+     */
+    private boolean findCandidate(Mat input, Rect result) {
+        int levels = Math.max(0, pyramidLevels);
+        if (pyramid.length != levels) {
+            for (Mat level : pyramid) {
+                level.release();
+            }
+            pyramid = new Mat[levels];
+            for (int i = 0; i < levels; i++) {
+                pyramid[i] = new Mat();
+            }
+        }
+
+        Mat small = input;
+        for (Mat level : pyramid) {
+            Imgproc.pyrDown(small, level);
+            small = level;
+        }
+
+        // The candidate search only needs one bounding box from a small mask, so it always uses contours
+        segment(small, smallBlurred, smallHsv, smallTmpMask, smallMask);
+        long contoursStart = startTiming();
+        detectionPool.findContours(smallMask, 0, 0);
+        lap(VisionStats.Stage.Contours, contoursStart);
+        long start = startTiming();
+
+        int scale = 1 << levels;
+        double areaScale = scale * scale;
+        List<MatOfPoint> contours = detectionPool.getContours();
+        MatOfPoint best = null;
+        double bestArea = -1;
+        for (int i = 0; i < contours.size(); i++) {
+            double area = Imgproc.contourArea(contours.get(i)) * areaScale;
+            if (area > bestArea && area > minimumAreaThreshold && area < maximumAreaThreshold) {
+                best = contours.get(i);
+                bestArea = area;
+            }
+        }
+
+        if (best != null) {
+            Rect boundingRect = Imgproc.boundingRect(best);
+            result.x = boundingRect.x * scale;
+            result.y = boundingRect.y * scale;
+            result.width = boundingRect.width * scale;
+            result.height = boundingRect.height * scale;
+        }
+        detectionPool.releaseContours();
+        lap(VisionStats.Stage.Selection, start);
+        return best != null;
+    }
+
+    /**
+     * Segments the whole frame into the mask, in parallel strips if they are enabled.
+     * The strips' stages overlap in time, so in parallel the whole segmentation is timed as Threshold.
+     */
+    private void segmentFrame(Mat input) {
+        int strips = parallelStrips;
+        if (strips <= 1) {
+            if (stripSegmenter != null) {
+                stripSegmenter.close();
+                stripSegmenter = null;
+            }
+            segment(input, blurred, hsv, tmpMask, mask);
+            return;
+        }
+
+        // The segmenter is only created and closed here, so its buffers are never freed while a strip is running
+        StripSegmenter segmenter = stripSegmenter;
+        if (segmenter == null || segmenter.getStripCount() != strips) {
+            if (segmenter != null) {
+                segmenter.close();
+            }
+            segmenter = new StripSegmenter(strips);
+            stripSegmenter = segmenter;
+        }
+
+        long start = startTiming();
+        ColorLookupTable table = segmentationMode == SegmentationMode.LookupTable ? getLookupTable() : null;
+        segmenter.segment(input, mask, blurSize, segmentationMode, colorRanges, table, erodeDilateIterations);
+        lap(VisionStats.Stage.Threshold, start);
+    }
+
+    /**
+     * Blurs, thresholds and cleans up a frame or region into a binary mask.
+     * All destinations may be submats; erode and dilate never read pixels outside them.
+     */
+    private void segment(Mat rgb, Mat blurredDst, Mat hsvDst, Mat tmpMaskDst, Mat maskDst) {
+        long time = startTiming();
+        Imgproc.GaussianBlur(rgb, blurredDst, blurSize, 0);
+        time = lap(VisionStats.Stage.Blur, time);
+
+        if (segmentationMode == SegmentationMode.LookupTable) {
+            thresholdLookupTable(blurredDst, maskDst);
+        } else {
+            Imgproc.cvtColor(blurredDst, hsvDst, Imgproc.COLOR_RGB2HSV);
+            time = lap(VisionStats.Stage.ColorConversion, time);
+            OpenCVUtil.inRanges(hsvDst, this.colorRanges, tmpMaskDst, maskDst);
+        }
+        time = lap(VisionStats.Stage.Threshold, time);
+
+        OpenCVUtil.erodeDilate(maskDst, STRUCTURING_ELEMENT, ANCHOR, erodeDilateIterations);
+        lap(VisionStats.Stage.Morphology, time);
+    }
+
+    /**
+     * Finds the blobs of a mask, as contours or as connected components depending on the detection mode.
+     */
+    private void findContours(Mat source, int offsetX, int offsetY) {
+        long start = startTiming();
+        if (frameDetectionMode == DetectionMode.Components) {
+            detectionPool.findComponents(source, offsetX, offsetY);
+        } else {
+            detectionPool.findContours(source, offsetX, offsetY);
+        }
+        lap(VisionStats.Stage.Contours, start);
+    }
+
+    private void selectDetections() {
+        long start = startTiming();
+        if (frameDetectionMode == DetectionMode.Components) {
+            detectionPool.selectComponents(maxDetections);
+        } else {
+            detectionPool.select(maxDetections);
+        }
+        lap(VisionStats.Stage.Selection, start);
+    }
+
+    /**
+     * @return the current time if statistics are enabled for this frame, otherwise 0
+     */
+    private long startTiming() {
+        return frameStats != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since start to a stage when statistics are enabled for this frame.
+     * @return the current time, to start timing the next stage
+     */
+    private long lap(VisionStats.Stage stage, long start) {
+        if (frameStats == null) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        frameStats.add(stage, now - start);
+        return now;
+    }
+
+    /**
+     * Thresholds the blurred frame in a single pass using a lookup table built from the color ranges.
+     * The table is rebuilt on the first frame after the color ranges change.
+     */
+    private void thresholdLookupTable(Mat rgb, Mat maskDst) {
+        getLookupTable().apply(rgb, maskDst);
+    }
+
+    private ColorLookupTable getLookupTable() {
+        ColorLookupTable table = this.lookupTable;
+        if (table == null) {
+            table = new ColorLookupTable(this.colorRanges);
+            this.lookupTable = table;
+        }
+        return table;
+    }
+
     @Override
     public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
-        if (detection != null && detection.isValid()) {
-            Point center = detection.getCenter();
-            canvas.drawCircle((float) center.x, (float) center.y, 10, LinePaint.WHITE);
+        overlay.draw(canvas, drawResults.getFront(), scaleBmpPxToCanvasPx, scaleCanvasDensity);
+
+        VisionStats stats = this.stats;
+        if (drawStats && stats != null) {
+            stats.draw(canvas, 10, 30, LinePaint.WHITE);
         }
     }
 
+    /**
+     * The ways a frame can be turned into a mask.
+     * Hsv converts the frame to HSV and runs one inRange per color range.
+     * LookupTable maps RGB pixels straight to the mask with a {@link ColorLookupTable}.
+     */
+    public enum SegmentationMode { Hsv, LookupTable }
+
+    /**
+     * The ways blobs can be found in the mask.
+     * Contours traces the outline of every blob and measures it with moments.
+     * Components labels the connected components of the mask in one pass and takes the area, centroid
+     * and bounding box from their statistics, so no contours are built unless
+     * {@link Detection#getContour()} is called. Component areas count pixels, so they are a little
+     * larger than contour areas.
+     */
+    public enum DetectionMode { Contours, Components }
+
     /**
      * @return the minimum area threshold in pixels
      */
     public double getMinimumAreaThreshold() {
-        return this.detection.getMinimumAreaThreshold();
+        return this.minimumAreaThreshold;
     }
 
     /**
      * @param minimumAreaThreshold the minimum area threshold in pixels
      */
     public void setMinimumAreaThreshold(double minimumAreaThreshold) {
-        this.detection.setMinimumAreaThreshold(minimumAreaThreshold);
+        this.minimumAreaThreshold = minimumAreaThreshold;
     }
 
     /**
      * @return the maximum area threshold in pixels
      */
     public double getMaximumAreaThreshold() {
-        return this.detection.getMaximumAreaThreshold();
+        return this.maximumAreaThreshold;
     }
 
     /**
      * @param maximumAreaThreshold the maximum area threshold in pixels
      */
     public void setMaximumAreaThreshold(double maximumAreaThreshold) {
-        this.detection.setMaximumAreaThreshold(maximumAreaThreshold);
+        this.maximumAreaThreshold = maximumAreaThreshold;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,324 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Gives detections stable IDs from frame to frame and predicts where each one will be next.
+ * Each update matches detections to tracks nearest first, within {@link #maxMatchDistance} of
+ * the track's predicted center. Matched tracks update a constant-velocity estimate, unmatched
+ * detections start new tracks, and tracks that go unmatched for more than {@link #maxMissedFrames}
+ * updates are dropped. Velocities are in pixels per update, so one update should be made for
+ * every processed frame.
+ * Tracks are kept in primitive arrays, so updates only allocate when more detections arrive
+ * in one frame than ever before. It is not thread-safe and is normally owned by the camera thread.
+ */
+public class BlobTracker {
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The farthest in pixels a detection can be from a track's predicted center and still match it
+     */
+    @Getter @Setter private double maxMatchDistance = 50;
+
+    /**
+     * The number of updates a track may go unmatched before it is dropped
+     */
+    @Getter @Setter private int maxMissedFrames = 5;
+
+    /**
+     * How much of the difference between the measured and estimated velocity is taken each update, from 0 to 1
+     */
+    @Getter @Setter private double velocityGain = 0.5;
+
+    /**
+     * The number of live tracks
+     */
+    @Getter private int trackCount;
+
+    private final int capacity;
+    private final int[] ids;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] velocityXs;
+    private final double[] velocityYs;
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] hits;
+    private final int[] misses;
+    private final boolean[] trackMatched;
+    private boolean[] detectionMatched = new boolean[0];
+    private int[] detectionTrackIds = new int[0];
+    private int detectionCount;
+    private int nextId;
+
+    public BlobTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the most tracks that are kept at once
+     */
+    public BlobTracker(int capacity) {
+        this.capacity = capacity;
+        ids = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        velocityXs = new double[capacity];
+        velocityYs = new double[capacity];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        hits = new int[capacity];
+        misses = new int[capacity];
+        trackMatched = new boolean[capacity];
+    }
+
+    /**
+     * Matches a frame's detections to the tracks and advances every track by one update.
+     * @param detections the frame's detections; invalid ones are ignored
+     */
+    public void update(List<Detection> detections) {
+        int count = detections.size();
+        if (detectionMatched.length < count) {
+            detectionMatched = new boolean[count];
+            detectionTrackIds = new int[count];
+        }
+        Arrays.fill(detectionMatched, 0, count, false);
+        Arrays.fill(detectionTrackIds, 0, count, -1);
+        Arrays.fill(trackMatched, 0, trackCount, false);
+        detectionCount = count;
+
+        // Greedily match the closest track and detection pair until no pair is close enough
+        double maxDistanceSquared = maxMatchDistance * maxMatchDistance;
+        while (true) {
+            int bestTrack = -1;
+            int bestDetection = -1;
+            double bestDistance = maxDistanceSquared;
+            for (int t = 0; t < trackCount; t++) {
+                if (trackMatched[t]) {
+                    continue;
+                }
+
+                double predictedX = xs[t] + velocityXs[t];
+                double predictedY = ys[t] + velocityYs[t];
+                for (int d = 0; d < count; d++) {
+                    if (detectionMatched[d] || !detections.get(d).isValid()) {
+                        continue;
+                    }
+
+                    Point center = detections.get(d).getCenter();
+                    double dx = center.x - predictedX;
+                    double dy = center.y - predictedY;
+                    double distance = dx * dx + dy * dy;
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack < 0) {
+                break;
+            }
+
+            trackMatched[bestTrack] = true;
+            detectionMatched[bestDetection] = true;
+            detectionTrackIds[bestDetection] = ids[bestTrack];
+            correct(bestTrack, detections.get(bestDetection));
+        }
+
+        // Coast the tracks that weren't seen and drop the ones that have been gone too long
+        for (int t = trackCount - 1; t >= 0; t--) {
+            if (trackMatched[t]) {
+                continue;
+            }
+
+            misses[t]++;
+            if (misses[t] > maxMissedFrames) {
+                remove(t);
+            } else {
+                xs[t] += velocityXs[t];
+                ys[t] += velocityYs[t];
+            }
+        }
+
+        for (int d = 0; d < count; d++) {
+            Detection detection = detections.get(d);
+            if (!detectionMatched[d] && detection.isValid() && trackCount < capacity) {
+                detectionTrackIds[d] = start(detection);
+            }
+        }
+    }
+
+    /**
+     * Drops every track. IDs keep counting up, so an ID is never reused.
+     */
+    public void clear() {
+        trackCount = 0;
+        detectionCount = 0;
+    }
+
+    /**
+     * @param detectionIndex the index of a detection in the list passed to the last update
+     * @return the ID of the track the detection was assigned to, or -1 if it wasn't tracked
+     */
+    public int getDetectionTrackId(int detectionIndex) {
+        if (detectionIndex < 0 || detectionIndex >= detectionCount) {
+            throw new IndexOutOfBoundsException("Detection " + detectionIndex + " of " + detectionCount);
+        }
+        return detectionTrackIds[detectionIndex];
+    }
+
+    /**
+     * @return the ID of the i-th track
+     */
+    public int getId(int i) {
+        return ids[checkIndex(i)];
+    }
+
+    /**
+     * @return the pixel x coordinate the i-th track is expected to be at in the next frame
+     */
+    public double getPredictedX(int i) {
+        return xs[checkIndex(i)] + velocityXs[i];
+    }
+
+    /**
+     * @return the pixel y coordinate the i-th track is expected to be at in the next frame
+     */
+    public double getPredictedY(int i) {
+        return ys[checkIndex(i)] + velocityYs[i];
+    }
+
+    /**
+     * @return the i-th track's x velocity in pixels per frame
+     */
+    public double getVelocityX(int i) {
+        return velocityXs[checkIndex(i)];
+    }
+
+    /**
+     * @return the i-th track's y velocity in pixels per frame
+     */
+    public double getVelocityY(int i) {
+        return velocityYs[checkIndex(i)];
+    }
+
+    /**
+     * @return the number of updates in a row the i-th track has gone unmatched
+     */
+    public int getMissedFrames(int i) {
+        return misses[checkIndex(i)];
+    }
+
+    /**
+     * @return the number of updates the i-th track has been matched in
+     */
+    public int getHits(int i) {
+        return hits[checkIndex(i)];
+    }
+
+    /**
+     * @return whether any track went unmatched in the last update
+     */
+    public boolean hasMissedTracks() {
+        for (int t = 0; t < trackCount; t++) {
+            if (misses[t] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the box expected to hold every track in the next frame, the union of their predicted bounding boxes.
+     * @param result the rect to write to
+     * @return false if there are no tracks, in which case result is unchanged
+     */
+    public boolean getPredictedBounds(Rect result) {
+        if (trackCount == 0) {
+            return false;
+        }
+
+        double left = Double.MAX_VALUE, top = Double.MAX_VALUE;
+        double right = -Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+        for (int t = 0; t < trackCount; t++) {
+            double x = xs[t] + velocityXs[t];
+            double y = ys[t] + velocityYs[t];
+            left = Math.min(left, x - widths[t] / 2.0);
+            top = Math.min(top, y - heights[t] / 2.0);
+            right = Math.max(right, x + widths[t] / 2.0);
+            bottom = Math.max(bottom, y + heights[t] / 2.0);
+        }
+        result.x = (int) Math.floor(left);
+        result.y = (int) Math.floor(top);
+        result.width = (int) Math.ceil(right) - result.x;
+        result.height = (int) Math.ceil(bottom) - result.y;
+        return true;
+    }
+
+    private int start(Detection detection) {
+        int t = trackCount++;
+        Point center = detection.getCenter();
+        Rect rect = detection.getBoundingRect();
+        ids[t] = nextId++;
+        xs[t] = center.x;
+        ys[t] = center.y;
+        velocityXs[t] = 0;
+        velocityYs[t] = 0;
+        widths[t] = rect.width;
+        heights[t] = rect.height;
+        hits[t] = 1;
+        misses[t] = 0;
+        trackMatched[t] = true;
+        return ids[t];
+    }
+
+    private void correct(int t, Detection detection) {
+        Point center = detection.getCenter();
+        Rect rect = detection.getBoundingRect();
+        // Coasted tracks have already been moved along their velocity, so this is always one frame of motion
+        double measuredX = center.x - xs[t];
+        double measuredY = center.y - ys[t];
+        // A track seen once has no velocity yet, so take the first measurement outright
+        double gain = hits[t] == 1 ? 1 : velocityGain;
+        velocityXs[t] += gain * (measuredX - velocityXs[t]);
+        velocityYs[t] += gain * (measuredY - velocityYs[t]);
+        xs[t] = center.x;
+        ys[t] = center.y;
+        widths[t] = rect.width;
+        heights[t] = rect.height;
+        hits[t]++;
+        misses[t] = 0;
+    }
+
+    /**
+     * Removes a track by moving the last track into its slot.
+     */
+    private void remove(int t) {
+        int last = --trackCount;
+        ids[t] = ids[last];
+        xs[t] = xs[last];
+        ys[t] = ys[last];
+        velocityXs[t] = velocityXs[last];
+        velocityYs[t] = velocityYs[last];
+        widths[t] = widths[last];
+        heights[t] = heights[last];
+        hits[t] = hits[last];
+        misses[t] = misses[last];
+        trackMatched[t] = trackMatched[last];
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= trackCount) {
+            throw new IndexOutOfBoundsException("Track " + i + " of " + trackCount);
+        }
+        return i;
+    }
+}
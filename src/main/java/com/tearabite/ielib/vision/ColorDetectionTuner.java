@@ -0,0 +1,374 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs a grid search over the speed and accuracy settings of BasicColorDetectionVisionProcessor on a
+ * set of labeled frames, measuring the latency and the detection error of every combination.
+ * It is meant to be run offline, for example on frames captured with FrameRecorder, and the
+ * {@link #paretoFrontier(List)} of the results shows which settings are worth considering.
+ * <p>
+ * The processor's own speed settings are swept directly: tracking mode, which searches a pyramid-downscaled
+ * frame and refines around the track at full resolution, and its number of pyramid levels.
+ * Separately, {@link #downscales} resizes the frames before they reach the processor to stand in
+ * for a lower camera resolution, which the processor can't change itself, so the resize is not timed.
+ * Area thresholds are given in full-resolution pixels and errors are reported in full-resolution
+ * pixels whatever the downscale.
+ */
+@Getter
+@Setter
+public class ColorDetectionTuner {
+    private final Supplier<BasicColorDetectionVisionProcessor> factory;
+    private final List<LabeledFrame> frames;
+
+    /**
+     * The blur kernel sizes to try. Each is used for both width and height and must be odd.
+     */
+    private int[] blurSizes = { 3, 5, 7 };
+
+    private int[] erodeDilateIterations = { 0, 1, 2 };
+
+    /**
+     * The minimum area thresholds to try, in full-resolution pixels
+     */
+    private double[] minimumAreaThresholds = { 0 };
+
+    /**
+     * The maximum area thresholds to try, in full-resolution pixels
+     */
+    private double[] maximumAreaThresholds = { Double.MAX_VALUE };
+
+    /**
+     * Whether to try the processor with tracking off, on, or both
+     */
+    private boolean[] trackingModes = { false, true };
+
+    /**
+     * The pyramid levels to try in tracking mode. They don't apply with tracking off.
+     */
+    private int[] pyramidLevels = { 1, 2 };
+
+    /**
+     * The camera resolutions to simulate, as scales of the labeled frames where 0.5 halves the width and height
+     */
+    private double[] downscales = { 1, 0.5 };
+
+    /**
+     * How many untimed passes over the frames are made with each setting before measuring
+     */
+    private int warmupPasses = 2;
+
+    /**
+     * How many timed passes over the frames are made with each setting
+     */
+    private int measuredPasses = 5;
+
+    /**
+     * @param factory creates a processor with the color ranges and any other fixed settings to tune for
+     * @param frames the labeled frames to score each setting on
+     */
+    public ColorDetectionTuner(Supplier<BasicColorDetectionVisionProcessor> factory, List<LabeledFrame> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("At least one labeled frame is needed");
+        }
+
+        this.factory = factory;
+        this.frames = frames;
+    }
+
+    /**
+     * Measures every combination of the configured settings.
+     * @return one result per combination, in the order they were run
+     */
+    public List<Result> run() {
+        List<Result> results = new ArrayList<>();
+        for (double downscale : downscales) {
+            List<LabeledFrame> scaled = scaleFrames(downscale);
+            try {
+                for (int blurSize : blurSizes) {
+                    for (int iterations : erodeDilateIterations) {
+                        for (double minimumArea : minimumAreaThresholds) {
+                            for (double maximumArea : maximumAreaThresholds) {
+                                for (boolean tracking : trackingModes) {
+                                    if (!tracking) {
+                                        Config config = new Config(blurSize, iterations, minimumArea, maximumArea, false, 0, downscale);
+                                        results.add(evaluate(config, scaled));
+                                        continue;
+                                    }
+                                    for (int levels : pyramidLevels) {
+                                        Config config = new Config(blurSize, iterations, minimumArea, maximumArea, true, levels, downscale);
+                                        results.add(evaluate(config, scaled));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (downscale != 1) {
+                    for (LabeledFrame frame : scaled) {
+                        frame.getFrame().release();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the results that no other result beats on both mean latency and mean IoU.
+     * @return the frontier, fastest first
+     */
+    public static List<Result> paretoFrontier(List<Result> results) {
+        List<Result> sorted = new ArrayList<>(results);
+        Collections.sort(sorted, new Comparator<Result>() {
+            @Override
+            public int compare(Result a, Result b) {
+                int byLatency = Double.compare(a.getMeanLatencyNanos(), b.getMeanLatencyNanos());
+                return byLatency != 0 ? byLatency : Double.compare(b.getMeanIou(), a.getMeanIou());
+            }
+        });
+
+        // Walking from fastest to slowest, a result is on the frontier if it is more accurate than everything faster
+        List<Result> frontier = new ArrayList<>();
+        double bestIou = Double.NEGATIVE_INFINITY;
+        for (Result result : sorted) {
+            if (result.getMeanIou() > bestIou) {
+                frontier.add(result);
+                bestIou = result.getMeanIou();
+            }
+        }
+        return frontier;
+    }
+
+    /**
+     * @param minimumIou the lowest acceptable mean IoU
+     * @param maximumCentroidError the highest acceptable mean centroid error in pixels
+     * @return the fastest result that is accurate enough, or null if none are
+     */
+    public static Result fastestMeeting(List<Result> results, double minimumIou, double maximumCentroidError) {
+        Result fastest = null;
+        for (Result result : results) {
+            boolean accurate = result.getMeanIou() >= minimumIou
+                    && result.getMeanCentroidError() <= maximumCentroidError;
+            if (accurate && (fastest == null || result.getMeanLatencyNanos() < fastest.getMeanLatencyNanos())) {
+                fastest = result;
+            }
+        }
+        return fastest;
+    }
+
+    /**
+     * @return a table of the results, one per line, with a header. An unlimited maximum area is
+     * written as inf, and the pyramid levels are left empty when tracking is off.
+     */
+    public static String formatReport(List<Result> results) {
+        StringBuilder report = new StringBuilder();
+        report.append("blur,iterations,minArea,maxArea,tracking,pyramidLevels,downscale,meanMs,p95Ms,meanIou,centroidErrorPx,misses,falsePositives\n");
+        for (Result result : results) {
+            Config config = result.getConfig();
+            report.append(String.format(Locale.US, "%d,%d,%s,%s,%b,%s,%.2f,%.3f,%.3f,%.3f,%.2f,%d,%d%n",
+                    config.getBlurSize(),
+                    config.getErodeDilateIterations(),
+                    formatArea(config.getMinimumAreaThreshold()),
+                    formatArea(config.getMaximumAreaThreshold()),
+                    config.isTrackingEnabled(),
+                    config.isTrackingEnabled() ? Integer.toString(config.getPyramidLevels()) : "",
+                    config.getDownscale(),
+                    result.getMeanLatencyNanos() / 1e6,
+                    result.getP95LatencyNanos() / 1e6,
+                    result.getMeanIou(),
+                    result.getMeanCentroidError(),
+                    result.getMisses(),
+                    result.getFalsePositives()));
+        }
+        return report.toString();
+    }
+
+    private static String formatArea(double area) {
+        return area >= Double.MAX_VALUE ? "inf" : String.format(Locale.US, "%.0f", area);
+    }
+
+    private Result evaluate(Config config, List<LabeledFrame> scaled) {
+        BasicColorDetectionVisionProcessor processor = factory.get();
+        double areaScale = config.getDownscale() * config.getDownscale();
+        processor.setBlurSize(new Size(config.getBlurSize(), config.getBlurSize()));
+        processor.setErodeDilateIterations(config.getErodeDilateIterations());
+        processor.setMinimumAreaThreshold(config.getMinimumAreaThreshold() * areaScale);
+        processor.setMaximumAreaThreshold(config.getMaximumAreaThreshold() * areaScale);
+        processor.setTrackingEnabled(config.isTrackingEnabled());
+        if (config.isTrackingEnabled()) {
+            processor.setPyramidLevels(config.getPyramidLevels());
+        }
+        Mat first = scaled.get(0).getFrame();
+        processor.init(first.cols(), first.rows(), null);
+
+        long time = 0;
+        for (int pass = 0; pass < warmupPasses; pass++) {
+            for (LabeledFrame frame : scaled) {
+                processor.processFrame(frame.getFrame(), time++);
+            }
+        }
+
+        long[] latencies = new long[measuredPasses * scaled.size()];
+        double iouSum = 0;
+        double centroidErrorSum = 0;
+        int targets = 0;
+        int centroids = 0;
+        int misses = 0;
+        int falsePositives = 0;
+        for (int pass = 0; pass < measuredPasses; pass++) {
+            for (int i = 0; i < scaled.size(); i++) {
+                LabeledFrame frame = scaled.get(i);
+                long start = System.nanoTime();
+                processor.processFrame(frame.getFrame(), time++);
+                latencies[pass * scaled.size() + i] = System.nanoTime() - start;
+
+                // Every pass sees the same frames, so accuracy only needs scoring once
+                if (pass > 0) {
+                    continue;
+                }
+
+                Detection detection = processor.getDetection();
+                Rect target = frame.getTarget();
+                if (target == null) {
+                    if (detection.isValid()) {
+                        falsePositives++;
+                    }
+                    continue;
+                }
+
+                targets++;
+                if (!detection.isValid()) {
+                    misses++;
+                    continue;
+                }
+
+                iouSum += iou(detection.getBoundingRect(), target);
+                Point center = detection.getCenter();
+                double dx = center.x - (target.x + target.width / 2.0);
+                double dy = center.y - (target.y + target.height / 2.0);
+                centroidErrorSum += Math.hypot(dx, dy) / config.getDownscale();
+                centroids++;
+            }
+        }
+
+        Arrays.sort(latencies);
+        double meanLatency = 0;
+        for (long latency : latencies) {
+            meanLatency += latency;
+        }
+        meanLatency /= latencies.length;
+        long p95Latency = latencies[Math.min(latencies.length - 1, (int) Math.ceil(latencies.length * 0.95) - 1)];
+
+        return new Result(
+                config,
+                meanLatency,
+                p95Latency,
+                targets == 0 ? 1 : iouSum / targets,
+                centroids == 0 ? (targets == 0 ? 0 : Double.POSITIVE_INFINITY) : centroidErrorSum / centroids,
+                misses,
+                falsePositives);
+    }
+
+    private List<LabeledFrame> scaleFrames(double downscale) {
+        if (downscale == 1) {
+            return frames;
+        }
+
+        List<LabeledFrame> scaled = new ArrayList<>(frames.size());
+        for (LabeledFrame frame : frames) {
+            Mat resized = new Mat();
+            Imgproc.resize(frame.getFrame(), resized, new Size(), downscale, downscale, Imgproc.INTER_AREA);
+            Rect target = frame.getTarget();
+            Rect scaledTarget = target == null ? null : new Rect(
+                    (int) Math.round(target.x * downscale),
+                    (int) Math.round(target.y * downscale),
+                    (int) Math.max(1, Math.round(target.width * downscale)),
+                    (int) Math.max(1, Math.round(target.height * downscale)));
+            scaled.add(new LabeledFrame(resized, scaledTarget));
+        }
+        return scaled;
+    }
+
+    /**
+     * @return the area of the intersection of two rects over the area of their union
+     */
+    static double iou(Rect a, Rect b) {
+        int width = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+        int height = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+
+        double intersection = (double) width * height;
+        return intersection / ((double) a.area() + b.area() - intersection);
+    }
+
+    /**
+     * One combination of settings.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Config {
+        private final int blurSize;
+        private final int erodeDilateIterations;
+        private final double minimumAreaThreshold;
+        private final double maximumAreaThreshold;
+        private final boolean trackingEnabled;
+
+        /**
+         * The processor's pyramid levels, or 0 when tracking is off and they don't apply
+         */
+        private final int pyramidLevels;
+
+        private final double downscale;
+    }
+
+    /**
+     * How one combination of settings performed.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final Config config;
+        private final double meanLatencyNanos;
+        private final long p95LatencyNanos;
+
+        /**
+         * The mean intersection over union of the detected and labeled boxes. A missed target scores 0.
+         */
+        private final double meanIou;
+
+        /**
+         * The mean distance in full-resolution pixels between detected and labeled centers, over the targets that were found
+         */
+        private final double meanCentroidError;
+
+        /**
+         * The number of labeled targets that were not detected
+         */
+        private final int misses;
+
+        /**
+         * The number of frames without a target in which something was detected
+         */
+        private final int falsePositives;
+    }
+}
@@ -0,0 +1,112 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * A precomputed lookup table that maps RGB pixels straight to a binary mask.
+ * The table is built once from a set of HSV {@link ScalarRange}s by converting the center of every
+ * quantized RGB cell with OpenCV, so thresholding a frame is then a single pass over its pixels
+ * with no HSV intermediate and one table read per pixel, however many ranges there are.
+ */
+public class ColorLookupTable {
+    /**
+     * The number of bits kept from each RGB channel
+     */
+    public static final int BITS_PER_CHANNEL = 6;
+
+    private static final int SHIFT = 8 - BITS_PER_CHANNEL;
+    private static final int LEVELS = 1 << BITS_PER_CHANNEL;
+
+    private final byte[] table;
+    private byte[] pixels = new byte[0];
+    private byte[] maskPixels = new byte[0];
+
+    /**
+     * @param colorRanges the HSV color ranges a pixel must fall in to be part of the mask
+     */
+    public ColorLookupTable(ScalarRange... colorRanges) {
+        this.table = new byte[LEVELS * LEVELS * LEVELS];
+        build(colorRanges);
+    }
+
+    private ColorLookupTable(byte[] table) {
+        this.table = table;
+    }
+
+    /**
+     * Apply reuses scratch buffers, so one table can't be applied on two threads at once.
+     * @return a table that shares this table's entries, including later rebuilds, but has its own scratch buffers
+     */
+    public ColorLookupTable share() {
+        return new ColorLookupTable(table);
+    }
+
+    /**
+     * Rebuilds the table for a new set of color ranges.
+     * @param colorRanges the HSV color ranges a pixel must fall in to be part of the mask
+     */
+    public void build(ScalarRange... colorRanges) {
+        Mat rgb = new Mat(table.length, 1, CvType.CV_8UC3);
+        Mat hsv = new Mat();
+        Mat rangeMask = new Mat();
+        Mat mask = Mat.zeros(table.length, 1, CvType.CV_8UC1);
+        try {
+            byte[] centers = new byte[table.length * 3];
+            int half = (1 << SHIFT) >> 1;
+            for (int i = 0; i < table.length; i++) {
+                centers[i * 3] = (byte) (((i >> (2 * BITS_PER_CHANNEL)) << SHIFT) + half);
+                centers[i * 3 + 1] = (byte) ((((i >> BITS_PER_CHANNEL) & (LEVELS - 1)) << SHIFT) + half);
+                centers[i * 3 + 2] = (byte) (((i & (LEVELS - 1)) << SHIFT) + half);
+            }
+            rgb.put(0, 0, centers);
+
+            // Run the cell centers through the same conversion and inRange calls as the HSV path
+            Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+            for (ScalarRange colorRange : colorRanges) {
+                Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), rangeMask);
+                Core.bitwise_or(mask, rangeMask, mask);
+            }
+            mask.get(0, 0, table);
+        } finally {
+            rgb.release();
+            hsv.release();
+            rangeMask.release();
+            mask.release();
+        }
+    }
+
+    /**
+     * Thresholds an RGB or RGBA frame into a single channel mask of 0 and 255 values.
+     * The pixel buffers are reused between calls and only reallocated when the frame size changes.
+     * @param rgb the 8-bit RGB or RGBA frame
+     * @param mask the output mask, reallocated only if its size does not match the frame
+     */
+    public void apply(Mat rgb, Mat mask) {
+        int channels = rgb.channels();
+        int pixelCount = rgb.rows() * rgb.cols();
+        if (rgb.depth() != CvType.CV_8U || channels < 3) {
+            throw new IllegalArgumentException("Expected an 8-bit RGB or RGBA frame");
+        }
+
+        if (pixels.length != pixelCount * channels) {
+            pixels = new byte[pixelCount * channels];
+        }
+        if (maskPixels.length != pixelCount) {
+            maskPixels = new byte[pixelCount];
+        }
+        mask.create(rgb.rows(), rgb.cols(), CvType.CV_8UC1);
+        rgb.get(0, 0, pixels);
+
+        for (int i = 0, p = 0; i < pixelCount; i++, p += channels) {
+            int r = (pixels[p] & 0xFF) >> SHIFT;
+            int g = (pixels[p + 1] & 0xFF) >> SHIFT;
+            int b = (pixels[p + 2] & 0xFF) >> SHIFT;
+            maskPixels[i] = table[(r << (2 * BITS_PER_CHANNEL)) | (g << BITS_PER_CHANNEL) | b];
+        }
+
+        mask.put(0, 0, maskPixels);
+    }
+}
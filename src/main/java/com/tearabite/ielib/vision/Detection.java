@@ -1,13 +1,13 @@
 package com.tearabite.ielib.vision;
 
-import static com.tearabite.ielib.vision.OpenCVUtil.getCenterOfContour;
-
+import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
 
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -18,27 +18,124 @@ import lombok.Setter;
  * It contains various useful abstraction methods for interacting with the detection.
  */
 @NoArgsConstructor()
-@AllArgsConstructor
-@Builder
 public class Detection {
     public static final Point INVALID_POINT = new Point(Double.MIN_VALUE, Double.MIN_VALUE);
     public static final double INVALID_AREA = -1;
 
-    @Getter @Setter private MatOfPoint contour;
-    @Getter @Setter private Size frameSize;
+    private MatOfPoint contour;
+    @Getter private Size frameSize;
     @Getter @Setter private double maxAreaThreshold;
     @Getter @Setter private double minAreaThreshold;
 
+    // Geometry derived from the contour's moments and bounding box, computed once in setContour so the getters are plain field reads
+    private double areaPx = INVALID_AREA;
+    private double areaPercent = INVALID_AREA;
+    private final Point centerPx = new Point(INVALID_POINT.x, INVALID_POINT.y);
+    private final Point centerPercent = new Point(INVALID_POINT.x, INVALID_POINT.y);
+    private final Rect boundingRect = new Rect();
+
+    // Set instead of a contour when the detection came from connected component labeling; the contour is traced from the labels on demand
+    private Mat componentLabels;
+    private int componentLabel;
+
+    @Builder
+    public Detection(MatOfPoint contour, Size frameSize, double maxAreaThreshold, double minAreaThreshold) {
+        this.frameSize = frameSize;
+        this.maxAreaThreshold = maxAreaThreshold;
+        this.minAreaThreshold = minAreaThreshold;
+        setContour(contour);
+    }
+
+    /**
+     * Sets the contour of the detection and computes its area, moments, centroid and bounding box.
+     * @param contour The contour, or null if nothing was detected
+     */
+    public void setContour(MatOfPoint contour) {
+        this.contour = contour;
+        this.componentLabels = null;
+        if (contour == null || contour.empty()) {
+            clearGeometry();
+            return;
+        }
+
+        // For a contour m00 is the same value Imgproc.contourArea returns, so one JNI call covers both
+        Moments moments = Imgproc.moments(contour);
+        Rect rect = Imgproc.boundingRect(contour);
+        this.areaPx = moments.m00;
+        this.boundingRect.x = rect.x;
+        this.boundingRect.y = rect.y;
+        this.boundingRect.width = rect.width;
+        this.boundingRect.height = rect.height;
+        if (moments.m00 != 0) {
+            this.centerPx.x = moments.m10 / moments.m00;
+            this.centerPx.y = moments.m01 / moments.m00;
+        } else {
+            this.centerPx.x = rect.x + rect.width / 2.0;
+            this.centerPx.y = rect.y + rect.height / 2.0;
+        }
+        updatePercentages();
+    }
+
+    /**
+     * Sets the detection from the statistics of a connected component, without tracing its contour.
+     * The area is the component's pixel count, which is a little larger than the area of its contour
+     * polygon, and the center is the mean of its pixels.
+     * @param labels the label image the component came from, which must stay unchanged while the contour may be requested
+     * @param label the component's label in the label image
+     * @param boundingRect the component's bounding box in the label image's pixels
+     */
+    void setComponent(Mat labels, int label, Rect boundingRect, double area, double centerX, double centerY) {
+        this.contour = null;
+        this.componentLabels = labels;
+        this.componentLabel = label;
+        this.areaPx = area;
+        this.centerPx.x = centerX;
+        this.centerPx.y = centerY;
+        this.boundingRect.x = boundingRect.x;
+        this.boundingRect.y = boundingRect.y;
+        this.boundingRect.width = boundingRect.width;
+        this.boundingRect.height = boundingRect.height;
+        updatePercentages();
+    }
+
+    /**
+     * Returns the contour of the detection. For a detection made from a connected component the
+     * contour is traced from the labels the first time it is asked for, which only stays possible
+     * until the next frame is processed.
+     * @return The contour, or null if nothing was detected
+     */
+    public MatOfPoint getContour() {
+        if (contour == null && componentLabels != null) {
+            contour = OpenCVUtil.traceComponent(componentLabels, componentLabel, boundingRect);
+        }
+        return contour;
+    }
+
+    /**
+     * @return the contour if it has been set or traced, without tracing it
+     */
+    MatOfPoint getContourIfPresent() {
+        return contour;
+    }
+
+    /**
+     * Sets the size of the frame the detection was made in and updates the percent-of-frame values.
+     * @param frameSize The frame size in pixels
+     */
+    public void setFrameSize(Size frameSize) {
+        this.frameSize = frameSize;
+        updatePercentages();
+    }
+
     /**
      * Returns whether the detection is valid or not.
-     * A detection is considered valid if it has a contour and its area is within
+     * A detection is considered valid if it has a contour or component and its area is within
      * the min and max area thresholds.
      */
     public boolean isValid() {
-        double area = getArea();
-        return contour != null
-                && area > minAreaThreshold
-                && area < maxAreaThreshold;
+        return hasShape()
+                && areaPx > minAreaThreshold
+                && areaPx < maxAreaThreshold;
     }
 
     /**
@@ -51,12 +148,7 @@ public class Detection {
             return INVALID_AREA;
         }
 
-        double areaPx = Imgproc.contourArea(contour);
-        if (scale == PropertyScale.Pixels) {
-            return areaPx;
-        }
-
-        return (areaPx / (frameSize.width * frameSize.height)) * 100;
+        return scale == PropertyScale.Pixels ? areaPx : areaPercent;
     }
 
     /**
@@ -69,6 +161,7 @@ public class Detection {
 
     /**
      * Returns the center of the detection in the specified scale.
+     * The returned point is owned by the detection and must not be modified.
      * @param scale The scale to return the center in
      * @return The center of the detection
      */
@@ -77,12 +170,7 @@ public class Detection {
             return INVALID_POINT;
         }
 
-        Point centerPx = OpenCVUtil.getCenterOfContour(this.contour);
-        if (scale == PropertyScale.Pixels) {
-            return centerPx;
-        }
-
-        return pixelPointToPercentageOfFrame(centerPx);
+        return scale == PropertyScale.Pixels ? centerPx : centerPercent;
     }
 
     /**
@@ -93,6 +181,15 @@ public class Detection {
         return getCenter(PropertyScale.Pixels);
     }
 
+    /**
+     * Returns the pixel bounding box of the detection's contour.
+     * The returned rect is owned by the detection and must not be modified.
+     * @return The bounding box, or an empty rect if there is no contour
+     */
+    public Rect getBoundingRect() {
+        return boundingRect;
+    }
+
     /**
      * Sets the maximum area threshold for the detection.
      * @param maximumAreaThreshold The maximum area threshold
@@ -189,14 +286,33 @@ public class Detection {
 
     public enum PropertyScale { Pixels, Percent }
 
+    private boolean hasShape() {
+        return contour != null || componentLabels != null;
+    }
+
+    private void clearGeometry() {
+        this.areaPx = INVALID_AREA;
+        this.areaPercent = INVALID_AREA;
+        this.centerPx.x = INVALID_POINT.x;
+        this.centerPx.y = INVALID_POINT.y;
+        this.centerPercent.x = INVALID_POINT.x;
+        this.centerPercent.y = INVALID_POINT.y;
+        this.boundingRect.x = 0;
+        this.boundingRect.y = 0;
+        this.boundingRect.width = 0;
+        this.boundingRect.height = 0;
+    }
+
     /**
-     * Converts a pixel point to a percentage of the frame.
-     * @param pixelPoint The pixel point to convert
-     * @return The percentage of the frame that the pixel point is at
+     * Converts the pixel area and center to percentages of the frame.
      */
-    private Point pixelPointToPercentageOfFrame(Point pixelPoint) {
-        double normalizedX = ((pixelPoint.x / frameSize.width) * 100) - 50;
-        double normalizedY = ((pixelPoint.y / frameSize.height) * -100) + 50;
-        return new Point(normalizedX, normalizedY);
+    private void updatePercentages() {
+        if (!hasShape() || frameSize == null || frameSize.area() <= 0) {
+            return;
+        }
+
+        this.areaPercent = (areaPx / (frameSize.width * frameSize.height)) * 100;
+        this.centerPercent.x = ((centerPx.x / frameSize.width) * 100) - 50;
+        this.centerPercent.y = ((centerPx.y / frameSize.height) * -100) + 50;
     }
 }
\ No newline at end of file
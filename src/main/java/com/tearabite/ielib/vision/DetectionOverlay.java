@@ -0,0 +1,89 @@
+package com.tearabite.ielib.vision;
+
+import android.graphics.Canvas;
+
+import com.tearabite.ielib.graphics.OverlayRenderer;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Draws the detections of a {@link DetectionResult} over the camera preview at a chosen level of detail.
+ * Each call batches every shape into an {@link OverlayRenderer}, so drawing takes a handful of canvas
+ * calls however many detections there are and does not allocate.
+ */
+public class DetectionOverlay {
+    /**
+     * How much is drawn for each detection. Each level also draws everything the levels before it draw.
+     */
+    public enum DetailLevel { None, Centers, BoundingBoxes, Ids, Contours }
+
+    @Getter @Setter private DetailLevel detailLevel = DetailLevel.BoundingBoxes;
+
+    /**
+     * The renderer the shapes are batched into, whose colors and sizes can be changed
+     */
+    @Getter private final OverlayRenderer renderer = new OverlayRenderer();
+
+    /**
+     * @return whether the current detail level needs contours copied into the results
+     */
+    public boolean needsContours() {
+        return detailLevel == DetailLevel.Contours;
+    }
+
+    /**
+     * Draws a result, scaling it from frame pixels to canvas pixels.
+     * @param scaleBmpPxToCanvasPx the scale from frame pixels to canvas pixels, as passed to onDrawFrame
+     * @param scaleCanvasDensity the canvas density, as passed to onDrawFrame
+     */
+    public void draw(Canvas canvas, DetectionResult result, float scaleBmpPxToCanvasPx, float scaleCanvasDensity) {
+        renderer.begin(scaleBmpPxToCanvasPx, scaleCanvasDensity);
+        add(result);
+        renderer.flush(canvas);
+    }
+
+    /**
+     * Adds a result's shapes to the renderer without drawing them, so several results can share one flush.
+     * Call {@link OverlayRenderer#begin(float, float)} first.
+     */
+    public void add(DetectionResult result) {
+        int level = detailLevel.ordinal();
+        if (level == DetailLevel.None.ordinal()) {
+            return;
+        }
+
+        for (int i = 0; i < result.getDetectionCount(); i++) {
+            float x = (float) result.getCenterX(i);
+            float y = (float) result.getCenterY(i);
+            renderer.addPoint(x, y);
+
+            if (level >= DetailLevel.Contours.ordinal() && result.hasContours() && result.getContourPointCount(i) > 1) {
+                addContour(result, i);
+            } else if (level >= DetailLevel.BoundingBoxes.ordinal()) {
+                addBoundingBox(result, i);
+            }
+
+            if (level >= DetailLevel.Ids.ordinal() && result.getTrackId(i) >= 0) {
+                renderer.addLabel(result.getTrackId(i), x, y);
+            }
+        }
+    }
+
+    private void addBoundingBox(DetectionResult result, int i) {
+        renderer.addRect(result.getBoundingX(i), result.getBoundingY(i), result.getBoundingWidth(i), result.getBoundingHeight(i));
+    }
+
+    private void addContour(DetectionResult result, int i) {
+        int count = result.getContourPointCount(i);
+        int previousX = result.getContourX(i, count - 1);
+        int previousY = result.getContourY(i, count - 1);
+        for (int j = 0; j < count; j++) {
+            int x = result.getContourX(i, j);
+            int y = result.getContourY(i, j);
+            renderer.addLine(previousX, previousY, x, y);
+            previousX = x;
+            previousY = y;
+        }
+    }
+}
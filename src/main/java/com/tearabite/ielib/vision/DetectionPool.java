@@ -0,0 +1,287 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds contours in a mask and keeps the largest of them in a pool of reused {@link Detection}s.
+ * The contour list and hierarchy are reused between frames, contours that are not kept are
+ * released as soon as the selection is made, and kept contours are released when the next
+ * selection replaces them.
+ * Alternatively it labels the mask's connected components and fills the detections from their
+ * statistics, leaving the contours to be traced only if they are asked for.
+ */
+class DetectionPool {
+    private final ArrayList<MatOfPoint> contours = new ArrayList<>();
+    private final Mat hierarchy = new Mat();
+    private final Point contourOffset = new Point();
+    private final ArrayList<Detection> detections = new ArrayList<>();
+    private final List<Detection> detectionsView = Collections.unmodifiableList(detections);
+    private final TopKSelector selector = new TopKSelector(1);
+    private Detection[] pool = new Detection[0];
+    private final Mat labels = new Mat();
+    private final Mat stats = new Mat();
+    private final Mat centroids = new Mat();
+    private final Rect componentRect = new Rect();
+    private int[] componentStats = new int[0];
+    private double[] componentCentroids = new double[0];
+    private int componentCount;
+    private int componentOffsetX;
+    private int componentOffsetY;
+    private final ShapeCandidate candidate = new ShapeCandidate();
+    private ShapeFilterChain shapeFilters;
+    private Size frameSize;
+    private double minimumAreaThreshold;
+    private double maximumAreaThreshold;
+
+    /**
+     * Sets the frame size of every pooled detection.
+     */
+    void setFrameSize(Size frameSize) {
+        this.frameSize = frameSize;
+        for (Detection pooled : pool) {
+            pooled.setFrameSize(frameSize);
+        }
+    }
+
+    /**
+     * Sets the pixel area thresholds used when selecting contours and by every pooled detection.
+     */
+    void setAreaThresholds(double minimumAreaThreshold, double maximumAreaThreshold) {
+        this.minimumAreaThreshold = minimumAreaThreshold;
+        this.maximumAreaThreshold = maximumAreaThreshold;
+        for (Detection pooled : pool) {
+            pooled.setMinAreaThreshold(minimumAreaThreshold);
+            pooled.setMaxAreaThreshold(maximumAreaThreshold);
+        }
+    }
+
+    /**
+     * Sets the filters candidates within the area thresholds must also pass, or null for none.
+     */
+    void setShapeFilters(ShapeFilterChain shapeFilters) {
+        this.shapeFilters = shapeFilters;
+    }
+
+    /**
+     * Finds the contours of a mask, offsetting them by the position of the mask in the frame.
+     * Imgproc.findContours appends to the list, so the previous contours must have been selected or released.
+     */
+    void findContours(Mat mask, int offsetX, int offsetY) {
+        contourOffset.x = offsetX;
+        contourOffset.y = offsetY;
+        Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE, contourOffset);
+    }
+
+    /**
+     * Labels the 8-connected components of a mask and reads their statistics.
+     * The labels are written into a buffer that covers the mask's position in the frame, so
+     * component contours can be traced in frame coordinates until the next call.
+     */
+    void findComponents(Mat mask, int offsetX, int offsetY) {
+        int rows = offsetY + mask.rows();
+        int cols = offsetX + mask.cols();
+        if (labels.rows() < rows || labels.cols() < cols) {
+            labels.create(Math.max(rows, labels.rows()), Math.max(cols, labels.cols()), CvType.CV_32SC1);
+        }
+
+        Mat labelsRoi = labels.submat(offsetY, rows, offsetX, cols);
+        int count;
+        try {
+            count = Imgproc.connectedComponentsWithStats(mask, labelsRoi, stats, centroids, 8, CvType.CV_32S);
+        } finally {
+            labelsRoi.release();
+        }
+
+        if (componentStats.length < count * Imgproc.CC_STAT_MAX) {
+            componentStats = new int[count * Imgproc.CC_STAT_MAX];
+            componentCentroids = new double[count * 2];
+        }
+        stats.get(0, 0, componentStats);
+        centroids.get(0, 0, componentCentroids);
+        componentCount = count;
+        componentOffsetX = offsetX;
+        componentOffsetY = offsetY;
+    }
+
+    /**
+     * Moves the largest components within the area thresholds into the pooled detections, without
+     * building any contours. Label 0 is the background and is skipped.
+     * @param maxDetections the number of detections to keep
+     */
+    void selectComponents(int maxDetections) {
+        int k = Math.max(1, maxDetections);
+        ensureCapacity(k);
+
+        selector.reset(k);
+        for (int label = 1; label < componentCount; label++) {
+            double area = componentStats[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA];
+            if (area > minimumAreaThreshold && area < maximumAreaThreshold && passesShapeFilters(label, area)) {
+                selector.offer(label, area);
+            }
+        }
+        int count = selector.sortDescending();
+
+        detections.clear();
+        for (int i = 0; i < pool.length; i++) {
+            keepContour(pool[i], null);
+            if (i < count) {
+                int label = selector.getIndex(i);
+                setComponentRect(label);
+                pool[i].setComponent(labels, label, componentRect, componentStats[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA],
+                        componentCentroids[label * 2] + componentOffsetX, componentCentroids[label * 2 + 1] + componentOffsetY);
+                detections.add(pool[i]);
+            }
+        }
+        componentCount = 0;
+    }
+
+    /**
+     * @return the contours found since the last selection or release
+     */
+    List<MatOfPoint> getContours() {
+        return contours;
+    }
+
+    /**
+     * Moves the largest contours within the area thresholds into the pooled detections.
+     * Each contour's area is computed once and ranked with a bounded heap rather than a full sort.
+     * @param maxDetections the number of detections to keep
+     */
+    void select(int maxDetections) {
+        int k = Math.max(1, maxDetections);
+        ensureCapacity(k);
+
+        selector.reset(k);
+        for (int i = 0; i < contours.size(); i++) {
+            double area = Imgproc.contourArea(contours.get(i));
+            if (area > minimumAreaThreshold && area < maximumAreaThreshold && passesShapeFilters(contours.get(i), area)) {
+                selector.offer(i, area);
+            }
+        }
+        int count = selector.sortDescending();
+
+        detections.clear();
+        for (int i = 0; i < pool.length; i++) {
+            MatOfPoint next = null;
+            if (i < count) {
+                int index = selector.getIndex(i);
+                next = contours.get(index);
+                contours.set(index, null);
+            }
+            keepContour(pool[i], next);
+            if (next != null) {
+                detections.add(pool[i]);
+            }
+        }
+        releaseContours();
+    }
+
+    /**
+     * @return the largest detection, which is the same object every frame
+     */
+    Detection getLargest() {
+        return pool.length > 0 ? pool[0] : null;
+    }
+
+    /**
+     * @return the detections from the last selection, largest first
+     */
+    List<Detection> getDetections() {
+        return detectionsView;
+    }
+
+    /**
+     * Grows or shrinks the pool. This only allocates when the requested size changes.
+     */
+    void ensureCapacity(int size) {
+        if (pool.length == size) {
+            return;
+        }
+
+        Detection[] resized = Arrays.copyOf(pool, size);
+        for (int i = pool.length; i < size; i++) {
+            resized[i] = Detection.builder()
+                    .frameSize(frameSize)
+                    .minAreaThreshold(minimumAreaThreshold)
+                    .maxAreaThreshold(maximumAreaThreshold)
+                    .build();
+        }
+        for (int i = size; i < pool.length; i++) {
+            keepContour(pool[i], null);
+        }
+        pool = resized;
+    }
+
+    /**
+     * Releases the native memory of every contour left in the contour buffer and clears it.
+     */
+    void releaseContours() {
+        for (int i = 0; i < contours.size(); i++) {
+            MatOfPoint contour = contours.get(i);
+            if (contour != null) {
+                contour.release();
+            }
+        }
+        contours.clear();
+    }
+
+    private boolean passesShapeFilters(MatOfPoint contour, double area) {
+        ShapeFilterChain filters = this.shapeFilters;
+        if (filters == null) {
+            return true;
+        }
+
+        candidate.reset(contour, area, (int) frameSize.width, (int) frameSize.height);
+        boolean passed = filters.test(candidate);
+        candidate.release();
+        return passed;
+    }
+
+    private boolean passesShapeFilters(int label, double area) {
+        ShapeFilterChain filters = this.shapeFilters;
+        if (filters == null) {
+            return true;
+        }
+
+        setComponentRect(label);
+        candidate.reset(labels, label, componentRect, area,
+                componentCentroids[label * 2] + componentOffsetX, componentCentroids[label * 2 + 1] + componentOffsetY,
+                (int) frameSize.width, (int) frameSize.height);
+        boolean passed = filters.test(candidate);
+        candidate.release();
+        return passed;
+    }
+
+    /**
+     * Sets the component rect to a component's bounding box in frame coordinates.
+     */
+    private void setComponentRect(int label) {
+        int stat = label * Imgproc.CC_STAT_MAX;
+        componentRect.x = componentStats[stat + Imgproc.CC_STAT_LEFT] + componentOffsetX;
+        componentRect.y = componentStats[stat + Imgproc.CC_STAT_TOP] + componentOffsetY;
+        componentRect.width = componentStats[stat + Imgproc.CC_STAT_WIDTH];
+        componentRect.height = componentStats[stat + Imgproc.CC_STAT_HEIGHT];
+    }
+
+    /**
+     * Replaces a detection's contour, releasing the contour it held before.
+     */
+    private void keepContour(Detection target, MatOfPoint contour) {
+        MatOfPoint previous = target.getContourIfPresent();
+        target.setContour(contour);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+}
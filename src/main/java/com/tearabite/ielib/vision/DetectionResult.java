@@ -0,0 +1,271 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of the detections a processor made in one frame.
+ * Snapshots are filled on the camera thread and handed to the opmode thread through a
+ * {@link com.tearabite.ielib.common.TripleBuffer}, so they can be read without locks while
+ * the next frame is being processed. All values are in pixels, largest detection first.
+ */
+public class DetectionResult {
+    /**
+     * The number of frames published before this one, or -1 if nothing has been published yet
+     */
+    @Getter private long sequence = -1;
+
+    /**
+     * The capture time of the frame this result came from, from System.nanoTime()
+     */
+    @Getter private long captureTimeNanos;
+
+    /**
+     * The time this result was published, from System.nanoTime()
+     */
+    @Getter private long publishTimeNanos;
+
+    @Getter private int frameWidth;
+    @Getter private int frameHeight;
+    @Getter private int detectionCount;
+
+    private double[] areas = new double[0];
+    private double[] centerXs = new double[0];
+    private double[] centerYs = new double[0];
+    private int[] rects = new int[0];
+    private int[] trackIds = new int[0];
+    private int[] contourStarts = new int[1];
+    private int[] contourPoints = new int[0];
+    private int[] contourScratch = new int[0];
+
+    /**
+     * @return whether at least one valid detection was made
+     */
+    public boolean isValid() {
+        return detectionCount > 0;
+    }
+
+    /**
+     * @return the pixel area of the i-th detection
+     */
+    public double getArea(int i) {
+        return areas[checkIndex(i)];
+    }
+
+    /**
+     * @return the pixel x coordinate of the center of the i-th detection
+     */
+    public double getCenterX(int i) {
+        return centerXs[checkIndex(i)];
+    }
+
+    /**
+     * @return the pixel y coordinate of the center of the i-th detection
+     */
+    public double getCenterY(int i) {
+        return centerYs[checkIndex(i)];
+    }
+
+    /**
+     * Copies the bounding box of the i-th detection into a caller-owned rect.
+     * @param i the index of the detection
+     * @param result the rect to write to
+     * @return result
+     */
+    public Rect getBoundingRect(int i, Rect result) {
+        int offset = checkIndex(i) * 4;
+        result.x = rects[offset];
+        result.y = rects[offset + 1];
+        result.width = rects[offset + 2];
+        result.height = rects[offset + 3];
+        return result;
+    }
+
+    /**
+     * @return the pixel x coordinate of the left edge of the i-th detection's bounding box
+     */
+    public int getBoundingX(int i) {
+        return rects[checkIndex(i) * 4];
+    }
+
+    /**
+     * @return the pixel y coordinate of the top edge of the i-th detection's bounding box
+     */
+    public int getBoundingY(int i) {
+        return rects[checkIndex(i) * 4 + 1];
+    }
+
+    /**
+     * @return the pixel width of the i-th detection's bounding box
+     */
+    public int getBoundingWidth(int i) {
+        return rects[checkIndex(i) * 4 + 2];
+    }
+
+    /**
+     * @return the pixel height of the i-th detection's bounding box
+     */
+    public int getBoundingHeight(int i) {
+        return rects[checkIndex(i) * 4 + 3];
+    }
+
+    /**
+     * @return the ID of the track the i-th detection belongs to, or -1 if it isn't tracked
+     */
+    public int getTrackId(int i) {
+        return trackIds[checkIndex(i)];
+    }
+
+    /**
+     * @return whether the contours of the detections were copied into this snapshot
+     */
+    public boolean hasContours() {
+        return contourStarts[detectionCount] > 0;
+    }
+
+    /**
+     * @return the number of points in the contour of the i-th detection, or 0 if contours weren't copied
+     */
+    public int getContourPointCount(int i) {
+        checkIndex(i);
+        return (contourStarts[i + 1] - contourStarts[i]) / 2;
+    }
+
+    /**
+     * @return the pixel x coordinate of the j-th point of the i-th detection's contour
+     */
+    public int getContourX(int i, int j) {
+        return contourPoints[contourStarts[checkIndex(i)] + 2 * j];
+    }
+
+    /**
+     * @return the pixel y coordinate of the j-th point of the i-th detection's contour
+     */
+    public int getContourY(int i, int j) {
+        return contourPoints[contourStarts[checkIndex(i)] + 2 * j + 1];
+    }
+
+    /**
+     * @return the pixel area of the largest detection
+     */
+    public double getArea() {
+        return getArea(0);
+    }
+
+    /**
+     * @return the pixel x coordinate of the center of the largest detection
+     */
+    public double getCenterX() {
+        return getCenterX(0);
+    }
+
+    /**
+     * @return the pixel y coordinate of the center of the largest detection
+     */
+    public double getCenterY() {
+        return getCenterY(0);
+    }
+
+    /**
+     * Keep the {@link #getSequence()} of the last result you handled, not the result itself:
+     * snapshots are recycled, so an old one is overwritten by a newer frame after later reads.
+     * @param lastSequence the sequence of a result that was handled earlier, or -1 if none was
+     * @return whether this result comes from a newer frame
+     */
+    public boolean isNewerThan(long lastSequence) {
+        return sequence > lastSequence;
+    }
+
+    /**
+     * Copies the valid detections of a frame into this snapshot.
+     * The arrays only grow when more detections are kept than ever before.
+     */
+    void update(long sequence, long captureTimeNanos, long publishTimeNanos, int frameWidth, int frameHeight, List<Detection> detections) {
+        update(sequence, captureTimeNanos, publishTimeNanos, frameWidth, frameHeight, detections, null, false);
+    }
+
+    /**
+     * Copies the valid detections of a frame, and the IDs the tracker gave them, into this snapshot.
+     * @param tracker the tracker last updated with detections, or null if they aren't tracked
+     * @param copyContours whether to copy the contour points too, for drawing
+     */
+    void update(long sequence, long captureTimeNanos, long publishTimeNanos, int frameWidth, int frameHeight, List<Detection> detections, BlobTracker tracker, boolean copyContours) {
+        int count = 0;
+        int points = 0;
+        ensureCapacity(detections.size());
+        for (int i = 0; i < detections.size(); i++) {
+            Detection detection = detections.get(i);
+            if (!detection.isValid()) {
+                continue;
+            }
+
+            Rect rect = detection.getBoundingRect();
+            areas[count] = detection.getArea();
+            centerXs[count] = detection.getCenter().x;
+            centerYs[count] = detection.getCenter().y;
+            rects[count * 4] = rect.x;
+            rects[count * 4 + 1] = rect.y;
+            rects[count * 4 + 2] = rect.width;
+            rects[count * 4 + 3] = rect.height;
+            trackIds[count] = tracker == null ? -1 : tracker.getDetectionTrackId(i);
+            contourStarts[count] = points;
+            if (copyContours) {
+                points = copyContour(detection.getContour(), points);
+            }
+            count++;
+        }
+        contourStarts[count] = points;
+
+        this.sequence = sequence;
+        this.captureTimeNanos = captureTimeNanos;
+        this.publishTimeNanos = publishTimeNanos;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.detectionCount = count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (areas.length >= capacity) {
+            return;
+        }
+
+        areas = new double[capacity];
+        centerXs = new double[capacity];
+        centerYs = new double[capacity];
+        rects = new int[capacity * 4];
+        trackIds = new int[capacity];
+        contourStarts = new int[capacity + 1];
+    }
+
+    /**
+     * Appends a contour's points after the given number of coordinates, growing the buffer if needed.
+     * @return the number of coordinates after the contour
+     */
+    private int copyContour(MatOfPoint contour, int start) {
+        int length = (int) contour.total() * 2;
+        if (contourScratch.length < length) {
+            contourScratch = new int[length];
+        }
+        if (contourPoints.length < start + length) {
+            int[] grown = new int[Math.max(start + length, contourPoints.length * 2)];
+            System.arraycopy(contourPoints, 0, grown, 0, start);
+            contourPoints = grown;
+        }
+        if (length > 0) {
+            contour.get(0, 0, contourScratch);
+            System.arraycopy(contourScratch, 0, contourPoints, start, length);
+        }
+        return start + length;
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= detectionCount) {
+            throw new IndexOutOfBoundsException("Detection " + i + " of " + detectionCount);
+        }
+        return i;
+    }
+}
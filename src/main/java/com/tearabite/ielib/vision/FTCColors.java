@@ -15,4 +15,5 @@ public class FTCColors {
     public static ScalarRange FTC_BLUE_RANGE = new ScalarRange(FTC_BLUE_UPPER, FTC_BLUE_LOWER);
     public static Scalar FTC_WHITE_LOWER = new Scalar(0, 0, 40);
     public static Scalar FTC_WHITE_UPPER = new Scalar(180, 30, 255);
+    public static ScalarRange FTC_WHITE_RANGE = new ScalarRange(FTC_WHITE_UPPER, FTC_WHITE_LOWER);
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Tells whether a frame differs meaningfully from a reference frame by comparing cheap signatures.
+ * A signature is the mean luminance of each cell of a coarse grid, found by area-resizing the frame
+ * down to the grid size. A frame has changed when any cell's luminance moved by more than the
+ * threshold, so a small object moving in one part of the frame is noticed even though the frame
+ * as a whole barely changes. Signatures are computed into reused buffers.
+ */
+public class FrameChangeDetector {
+    /**
+     * The size of the signature grid
+     */
+    @Getter private final Size gridSize;
+
+    /**
+     * How far in 0-255 luminance levels a cell must move for the frame to count as changed
+     */
+    @Getter @Setter private double threshold = 6;
+
+    /**
+     * The largest cell difference found by the last call to {@link #hasChanged(Mat)}
+     */
+    @Getter private int lastDifference;
+
+    private final Mat small = new Mat();
+    private byte[] pixels = new byte[0];
+    private int[] current;
+    private int[] reference;
+    private boolean hasReference;
+
+    public FrameChangeDetector() {
+        this(16, 12);
+    }
+
+    /**
+     * @param gridWidth the number of signature cells across
+     * @param gridHeight the number of signature cells down
+     */
+    public FrameChangeDetector(int gridWidth, int gridHeight) {
+        this.gridSize = new Size(gridWidth, gridHeight);
+        this.current = new int[gridWidth * gridHeight];
+        this.reference = new int[gridWidth * gridHeight];
+    }
+
+    /**
+     * Compares a frame with the reference. A changed frame becomes the new reference; an unchanged one
+     * does not, so slow drift still adds up to a change.
+     * @param frame an RGB or RGBA frame
+     * @return whether the frame changed, which is always true when there is no reference yet
+     */
+    public boolean hasChanged(Mat frame) {
+        computeSignature(frame);
+
+        int difference = Integer.MAX_VALUE;
+        if (hasReference) {
+            difference = 0;
+            for (int i = 0; i < current.length; i++) {
+                difference = Math.max(difference, Math.abs(current[i] - reference[i]));
+            }
+        }
+        lastDifference = difference;
+
+        boolean changed = difference > threshold;
+        if (changed) {
+            updateReference();
+        }
+        return changed;
+    }
+
+    /**
+     * Makes the frame last passed to {@link #hasChanged(Mat)} the reference even though it didn't change.
+     */
+    public void updateReference() {
+        int[] swap = reference;
+        reference = current;
+        current = swap;
+        hasReference = true;
+    }
+
+    /**
+     * Forgets the reference so the next frame counts as changed.
+     */
+    public void reset() {
+        hasReference = false;
+    }
+
+    private void computeSignature(Mat frame) {
+        Imgproc.resize(frame, small, gridSize, 0, 0, Imgproc.INTER_AREA);
+        int channels = small.channels();
+        int length = current.length * channels;
+        if (pixels.length != length) {
+            pixels = new byte[length];
+        }
+        small.get(0, 0, pixels);
+
+        for (int i = 0, p = 0; i < current.length; i++, p += channels) {
+            int r = pixels[p] & 0xff;
+            int g = pixels[p + 1] & 0xff;
+            int b = pixels[p + 2] & 0xff;
+            current[i] = (77 * r + 150 * g + 29 * b) >> 8;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.tearabite.ielib.vision;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Wraps a VisionProcessor and appends every raw frame it sees, with its capture time, to a file
+ * so the run can be replayed off the robot with FrameReplayer.
+ * <p>
+ * The camera thread only makes one native copy of each frame, into a slot of a preallocated ring of
+ * direct buffers, and a background thread writes the slots to the file. Direct buffers are written
+ * without the hidden copy the JDK makes of heap buffers. When the writer falls behind and the ring
+ * is full, frames are dropped and counted instead of slowing the wrapped processor down.
+ * A write failure stops the recording rather than the wrapped processor; the exception is kept in getError().
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by one record per frame:
+ * the capture time, rows, columns, OpenCV type and pixel byte count, then the pixels, all little endian.
+ */
+public class FrameRecorder implements VisionProcessor, Closeable {
+    public static final int MAGIC = 0x464c4549; // "IELF"
+    public static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int FRAME_HEADER_BYTES = 24;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    @Getter private final VisionProcessor processor;
+    @Getter private final File file;
+
+    /**
+     * Whether frames are currently being written. Frames still reach the wrapped processor either way.
+     */
+    @Getter @Setter private volatile boolean recording = true;
+
+    /**
+     * The number of frames written to the file
+     */
+    @Getter private volatile long framesRecorded;
+
+    /**
+     * The number of frames dropped because the writer had fallen behind
+     */
+    @Getter private volatile long framesDropped;
+
+    @Getter private volatile IOException error;
+
+    // A single-producer, single-consumer ring: the camera thread fills slot published % capacity,
+    // and the writer thread empties slot written % capacity.
+    private final PixelBuffer[] frames;
+    private final long[] captureTimes;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer[] record = new ByteBuffer[2];
+
+    /**
+     * @param processor the processor that frames are passed on to
+     * @param file the file to write, which is replaced if it exists
+     */
+    public FrameRecorder(VisionProcessor processor, File file) {
+        this(processor, file, 4);
+    }
+
+    /**
+     * @param processor the processor that frames are passed on to
+     * @param file the file to write, which is replaced if it exists
+     * @param bufferedFrames how many frames may wait for the writer before new ones are dropped
+     */
+    public FrameRecorder(VisionProcessor processor, File file, int bufferedFrames) {
+        if (bufferedFrames < 1) {
+            throw new IllegalArgumentException("At least one frame must be buffered");
+        }
+
+        this.processor = processor;
+        this.file = file;
+        this.frames = new PixelBuffer[bufferedFrames];
+        for (int i = 0; i < bufferedFrames; i++) {
+            frames[i] = new PixelBuffer();
+        }
+        this.captureTimes = new long[bufferedFrames];
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+        processor.init(width, height, calibration);
+
+        try {
+            close();
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.truncate(0);
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            fileHeader.putInt(MAGIC).putInt(VERSION).flip();
+            while (fileHeader.hasRemaining()) {
+                channel.write(fileHeader);
+            }
+        } catch (IOException e) {
+            fail(e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // The original error is the one worth reporting
+                }
+                channel = null;
+            }
+            return;
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "FrameRecorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Object processFrame(Mat input, long captureTimeNanos) {
+        if (recording && running) {
+            offer(input, captureTimeNanos);
+        }
+
+        return processor.processFrame(input, captureTimeNanos);
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        processor.onDrawFrame(canvas, onscreenWidth, onscreenHeight, scaleBmpPxToCanvasPx, scaleCanvasDensity, userContext);
+    }
+
+    /**
+     * Waits for the writer to write every buffered frame, then flushes and closes the file.
+     * Recording resumes in a new file on the next init.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        Thread stopping = writer;
+        if (stopping != null) {
+            running = false;
+            LockSupport.unpark(stopping);
+            boolean interrupted = false;
+            while (stopping.isAlive()) {
+                try {
+                    stopping.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            writer = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (channel != null) {
+            FileChannel closing = channel;
+            channel = null;
+            try {
+                if (error == null) {
+                    closing.force(false);
+                }
+            } finally {
+                closing.close();
+            }
+        }
+    }
+
+    /**
+     * Copies a frame into the next free slot, or drops it if there is none. Runs on the camera thread.
+     */
+    private void offer(Mat input, long captureTimeNanos) {
+        long position = published.get();
+        if (position - written.get() >= frames.length) {
+            framesDropped++;
+            return;
+        }
+
+        int slot = (int) (position % frames.length);
+        // Also packs submats, whose rows have gaps between them
+        frames[slot].copyFrom(input);
+        captureTimes[slot] = captureTimeNanos;
+        // The ordered write makes the slot's pixels visible to the writer first
+        published.lazySet(position + 1);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running;
+            if (!writeAvailable()) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes every published frame, in order, and frees their slots.
+     * @return whether any frames were written
+     */
+    private boolean writeAvailable() {
+        long position = written.get();
+        long end = published.get();
+        if (position == end) {
+            return false;
+        }
+
+        for (; position < end; position++) {
+            int slot = (int) (position % frames.length);
+            if (error == null) {
+                try {
+                    write(frames[slot], captureTimes[slot]);
+                    framesRecorded++;
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            written.lazySet(position + 1);
+        }
+        return true;
+    }
+
+    private void write(PixelBuffer frame, long captureTimeNanos) throws IOException {
+        int length = frame.getRows() * frame.getStep();
+        header.clear();
+        header.putLong(captureTimeNanos)
+                .putInt(frame.getRows())
+                .putInt(frame.getCols())
+                .putInt(frame.getType())
+                .putInt(length)
+                .flip();
+        // The writer owns the slot until it is freed, so it may move the buffer's position
+        ByteBuffer pixels = frame.getBuffer();
+        pixels.clear();
+        record[0] = header;
+        record[1] = pixels;
+        while (pixels.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private void fail(IOException e) {
+        error = e;
+        recording = false;
+    }
+}
@@ -0,0 +1,179 @@
+package com.tearabite.ielib.vision;
+
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import lombok.Getter;
+
+/**
+ * Reads back a file written by FrameRecorder, either one frame at a time or by feeding every
+ * frame through a VisionProcessor. The file is memory-mapped in windows of up to
+ * {@link #MAX_WINDOW_BYTES}, so recordings larger than 2 GB can be replayed.
+ */
+public class FrameReplayer implements Closeable {
+    static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] pixels = new byte[0];
+
+    /**
+     * The capture time of the frame most recently read by next
+     */
+    @Getter private long captureTimeNanos;
+
+    /**
+     * The number of frames read since the file was opened or rewound
+     */
+    @Getter private int framesRead;
+
+    /**
+     * @param file a file written by FrameRecorder
+     * @throws IOException if the file can't be read or wasn't written by FrameRecorder
+     */
+    public FrameReplayer(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+        if (fileSize < FrameRecorder.FILE_HEADER_BYTES) {
+            close();
+            throw new IOException("Not a frame recording: " + file);
+        }
+
+        map(0, FrameRecorder.FILE_HEADER_BYTES);
+        int magic = window.getInt(0);
+        int version = window.getInt(4);
+        if (magic != FrameRecorder.MAGIC || version != FrameRecorder.VERSION) {
+            close();
+            throw new IOException("Not a version " + FrameRecorder.VERSION + " frame recording: " + file);
+        }
+        rewind();
+    }
+
+    /**
+     * Goes back to the first frame.
+     */
+    public void rewind() {
+        position = FrameRecorder.FILE_HEADER_BYTES;
+        framesRead = 0;
+        captureTimeNanos = 0;
+    }
+
+    /**
+     * @return whether another complete frame can be read
+     */
+    public boolean hasNext() {
+        if (position + FrameRecorder.FRAME_HEADER_BYTES > fileSize) {
+            return false;
+        }
+
+        int length = peekLength();
+        return length >= 0 && position + FrameRecorder.FRAME_HEADER_BYTES + length <= fileSize;
+    }
+
+    /**
+     * Reads the next frame. A truncated last frame, as left by a recording that was cut off, is treated as the end.
+     * @param frame receives the pixels and is reallocated if its size or type differ
+     * @return false if there are no more frames, in which case frame is unchanged
+     */
+    public boolean next(Mat frame) throws IOException {
+        if (!hasNext()) {
+            return false;
+        }
+
+        map(position, FrameRecorder.FRAME_HEADER_BYTES);
+        int offset = (int) (position - windowStart);
+        long capture = window.getLong(offset);
+        int rows = window.getInt(offset + 8);
+        int cols = window.getInt(offset + 12);
+        int type = window.getInt(offset + 16);
+        int length = window.getInt(offset + 20);
+        position += FrameRecorder.FRAME_HEADER_BYTES;
+
+        if (pixels.length != length) {
+            pixels = new byte[length];
+        }
+        map(position, length);
+        window.position((int) (position - windowStart));
+        window.get(pixels, 0, length);
+        position += length;
+
+        frame.create(rows, cols, type);
+        frame.put(0, 0, pixels);
+        captureTimeNanos = capture;
+        framesRead++;
+        return true;
+    }
+
+    /**
+     * Feeds every remaining frame through a processor, calling init with the size of the first frame.
+     * @param realTime whether to wait between frames so they arrive as far apart as they were captured,
+     *                 rather than as fast as the processor can take them
+     * @return the number of frames processed
+     */
+    public int replay(VisionProcessor processor, boolean realTime) throws IOException, InterruptedException {
+        Mat frame = new Mat();
+        try {
+            int count = 0;
+            long firstCapture = 0;
+            long replayStart = 0;
+            while (next(frame)) {
+                if (count == 0) {
+                    processor.init(frame.cols(), frame.rows(), null);
+                    firstCapture = captureTimeNanos;
+                    replayStart = System.nanoTime();
+                } else if (realTime) {
+                    long waitNanos = (captureTimeNanos - firstCapture) - (System.nanoTime() - replayStart);
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                    }
+                }
+
+                processor.processFrame(frame, captureTimeNanos);
+                count++;
+            }
+            return count;
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private int peekLength() {
+        try {
+            map(position, FrameRecorder.FRAME_HEADER_BYTES);
+        } catch (IOException e) {
+            return Integer.MAX_VALUE;
+        }
+        return window.getInt((int) (position - windowStart) + 20);
+    }
+
+    /**
+     * Makes sure the given range of the file is inside the mapped window, moving the window if it isn't.
+     */
+    private void map(long start, long length) throws IOException {
+        if (window != null && start >= windowStart && start + length <= windowStart + window.capacity()) {
+            return;
+        }
+
+        long size = Math.min(fileSize - start, Math.max(length, MAX_WINDOW_BYTES));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+    }
+}
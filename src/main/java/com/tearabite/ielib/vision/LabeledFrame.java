@@ -0,0 +1,24 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A frame paired with the bounding box of the object that should be detected in it.
+ */
+@Getter
+@AllArgsConstructor
+public class LabeledFrame {
+    /**
+     * The frame, in the same format the processor receives from the camera
+     */
+    private final Mat frame;
+
+    /**
+     * The bounding box of the object in pixels, or null if nothing should be detected
+     */
+    private final Rect target;
+}
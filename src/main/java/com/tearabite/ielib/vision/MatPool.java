@@ -0,0 +1,94 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+
+import lombok.Getter;
+
+/**
+ * A pool of frame-sized Mats shared by the stages of a pipeline.
+ * A Mat is acquired for a stage's output and released once the next stage has read it, so a
+ * linear pipeline only needs about two buffers per Mat type however many stages it has. After the
+ * first frame every acquire is served from the pool. A free Mat is only reused for the type it
+ * already has, so reusing one never has to reallocate its native memory.
+ * It is not thread-safe and is owned by the camera thread.
+ */
+public class MatPool {
+    private final ArrayList<Mat> free = new ArrayList<>();
+    private final ArrayList<Mat> all = new ArrayList<>();
+
+    @Getter private int width;
+    @Getter private int height;
+
+    /**
+     * Sets the size of the Mats handed out from now on.
+     */
+    public void init(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param type the OpenCV type of the Mat, such as CvType.CV_8UC1
+     * @return a frame-sized Mat of that type, which belongs to the caller until it is released
+     */
+    public Mat acquire(int type) {
+        return acquire(height, width, type);
+    }
+
+    /**
+     * @return a Mat of the given size and type, which belongs to the caller until it is released
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        Mat mat = null;
+        for (int i = free.size() - 1; i >= 0; i--) {
+            if (free.get(i).type() == type) {
+                mat = free.remove(i);
+                break;
+            }
+        }
+        if (mat == null) {
+            mat = new Mat();
+            all.add(mat);
+        }
+
+        mat.create(rows, cols, type);
+        return mat;
+    }
+
+    /**
+     * Returns a Mat to the pool. Releasing a Mat that didn't come from the pool is ignored.
+     */
+    public void release(Mat mat) {
+        if (mat == null || free.contains(mat) || !all.contains(mat)) {
+            return;
+        }
+        free.add(mat);
+    }
+
+    /**
+     * @return the number of Mats the pool has created
+     */
+    public int getAllocatedCount() {
+        return all.size();
+    }
+
+    /**
+     * @return the number of Mats waiting in the pool
+     */
+    public int getFreeCount() {
+        return free.size();
+    }
+
+    /**
+     * Frees the native memory of every Mat the pool created, including ones still acquired.
+     */
+    public void releaseAll() {
+        for (Mat mat : all) {
+            mat.release();
+        }
+        all.clear();
+        free.clear();
+    }
+}
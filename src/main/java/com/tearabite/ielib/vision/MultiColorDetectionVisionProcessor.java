@@ -0,0 +1,238 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.ANCHOR;
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.STRUCTURING_ELEMENT;
+import static com.tearabite.ielib.vision.FTCColors.FTC_BLUE_RANGE;
+import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_1;
+import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_2;
+import static com.tearabite.ielib.vision.FTCColors.FTC_WHITE_RANGE;
+
+import android.graphics.Canvas;
+
+import com.tearabite.ielib.common.TripleBuffer;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A color detection vision processor that detects several named color classes in one pass.
+ * The blur and HSV conversion are shared by every class, so adding a class only adds its
+ * thresholding, erode/dilate and contour search to the cost of a frame.
+ */
+public class MultiColorDetectionVisionProcessor implements VisionProcessor {
+    public static final String RED = "red";
+    public static final String BLUE = "blue";
+    public static final String WHITE = "white";
+
+    /**
+     * The size of the blur kernel
+     */
+    @Getter @Setter private Size blurSize = new Size(7, 7);
+
+    /**
+     * The number of iterations to erode and dilate each class's mask
+     */
+    @Getter @Setter private int erodeDilateIterations = 2;
+
+    /**
+     * Draws every class's detections in onDrawFrame. Its detail level and colors can be changed.
+     */
+    @Getter private final DetectionOverlay overlay = new DetectionOverlay();
+
+    private ColorClass[] colorClasses = new ColorClass[0];
+    private final Mat blurred = new Mat();
+    private final Mat hsv = new Mat();
+    private final Mat tmpMask = new Mat();
+    private Size frameSize;
+
+    /**
+     * @return a new instance of a multi-color processor targeting FTC Red, Blue and White
+     */
+    public static MultiColorDetectionVisionProcessor RedBlueWhite() {
+        return new MultiColorDetectionVisionProcessor()
+                .addColorClass(RED, FTC_RED_RANGE_1, FTC_RED_RANGE_2)
+                .addColorClass(BLUE, FTC_BLUE_RANGE)
+                .addColorClass(WHITE, FTC_WHITE_RANGE);
+    }
+
+    /**
+     * Adds a named color class. Classes should be added before the processor is attached to a portal.
+     * @param name the name the class's detections are looked up by
+     * @param colorRanges the HSV ranges that make up the class
+     * @return this processor
+     */
+    public MultiColorDetectionVisionProcessor addColorClass(String name, ScalarRange... colorRanges) {
+        if (findColorClass(name) != null) {
+            throw new IllegalArgumentException("Duplicate color class " + name);
+        }
+
+        ColorClass colorClass = new ColorClass(name, colorRanges);
+        if (frameSize != null) {
+            colorClass.detectionPool.setFrameSize(frameSize);
+        }
+        ColorClass[] classes = Arrays.copyOf(colorClasses, colorClasses.length + 1);
+        classes[colorClasses.length] = colorClass;
+        colorClasses = classes;
+        return this;
+    }
+
+    /**
+     * @param name the name of the class
+     * @return the color class, so its thresholds and detection count can be configured
+     * @throws IllegalArgumentException if there is no class with that name
+     */
+    public ColorClass getColorClass(String name) {
+        ColorClass colorClass = findColorClass(name);
+        if (colorClass == null) {
+            throw new IllegalArgumentException("Unknown color class " + name);
+        }
+        return colorClass;
+    }
+
+    /**
+     * @return the newest published result for the class, see {@link ColorClass#getLatestResult()}
+     */
+    public DetectionResult getLatestResult(String name) {
+        return getColorClass(name).getLatestResult();
+    }
+
+    /**
+     * Sets the minimum area threshold of every class.
+     * @param minimumAreaThreshold the minimum area threshold in pixels
+     */
+    public void setMinimumAreaThreshold(double minimumAreaThreshold) {
+        for (ColorClass colorClass : colorClasses) {
+            colorClass.setMinimumAreaThreshold(minimumAreaThreshold);
+        }
+    }
+
+    /**
+     * Sets the maximum area threshold of every class.
+     * @param maximumAreaThreshold the maximum area threshold in pixels
+     */
+    public void setMaximumAreaThreshold(double maximumAreaThreshold) {
+        for (ColorClass colorClass : colorClasses) {
+            colorClass.setMaximumAreaThreshold(maximumAreaThreshold);
+        }
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+        this.frameSize = new Size(width, height);
+        for (ColorClass colorClass : colorClasses) {
+            colorClass.detectionPool.setFrameSize(frameSize);
+        }
+    }
+
+    @Override
+    public Object processFrame(Mat input, long captureTimeNanos) {
+        Imgproc.GaussianBlur(input, blurred, blurSize, 0);
+        Imgproc.cvtColor(blurred, hsv, Imgproc.COLOR_RGB2HSV);
+
+        ColorClass[] classes = this.colorClasses;
+        for (ColorClass colorClass : classes) {
+            colorClass.process(hsv, tmpMask, erodeDilateIterations);
+        }
+
+        long now = System.nanoTime();
+        for (ColorClass colorClass : classes) {
+            colorClass.publish(captureTimeNanos, now, input.cols(), input.rows(), overlay.needsContours());
+        }
+        return input;
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        overlay.getRenderer().begin(scaleBmpPxToCanvasPx, scaleCanvasDensity);
+        for (ColorClass colorClass : colorClasses) {
+            overlay.add(colorClass.drawResults.getFront());
+        }
+        overlay.getRenderer().flush(canvas);
+    }
+
+    private ColorClass findColorClass(String name) {
+        for (ColorClass colorClass : colorClasses) {
+            if (colorClass.name.equals(name)) {
+                return colorClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A named set of color ranges and the detections made for it.
+     */
+    public static class ColorClass {
+        @Getter private final String name;
+        @Getter private final ScalarRange[] colorRanges;
+
+        /**
+         * The maximum number of detections to report each frame, largest first
+         */
+        @Getter @Setter private int maxDetections = 1;
+
+        @Getter @Setter private double minimumAreaThreshold;
+        @Getter @Setter private double maximumAreaThreshold;
+
+        private final Mat mask = new Mat();
+        private final DetectionPool detectionPool = new DetectionPool();
+        private final TripleBuffer<DetectionResult> results = new TripleBuffer<>(DetectionResult::new);
+        private final TripleBuffer<DetectionResult> drawResults = new TripleBuffer<>(DetectionResult::new);
+        private long sequence;
+
+        ColorClass(String name, ScalarRange[] colorRanges) {
+            this.name = name;
+            this.colorRanges = colorRanges;
+        }
+
+        /**
+         * @return the largest detection of the class. It is owned by the camera thread.
+         */
+        public Detection getDetection() {
+            return detectionPool.getLargest();
+        }
+
+        /**
+         * @return the detections of the class from the last frame, largest first. The list is owned by the camera thread.
+         */
+        public List<Detection> getDetections() {
+            return detectionPool.getDetections();
+        }
+
+        /**
+         * Returns the newest published result for the class. The snapshot does not change until this
+         * is called again. Call this from a single thread, normally the opmode loop.
+         * @return the latest result, with a sequence of -1 until the first frame is processed
+         */
+        public DetectionResult getLatestResult() {
+            return results.getFront();
+        }
+
+        private void process(Mat hsv, Mat tmpMask, int erodeDilateIterations) {
+            OpenCVUtil.inRanges(hsv, colorRanges, tmpMask, mask);
+            OpenCVUtil.erodeDilate(mask, STRUCTURING_ELEMENT, ANCHOR, erodeDilateIterations);
+
+            detectionPool.setAreaThresholds(minimumAreaThreshold, maximumAreaThreshold);
+            detectionPool.findContours(mask, 0, 0);
+            detectionPool.select(maxDetections);
+        }
+
+        private void publish(long captureTimeNanos, long publishTimeNanos, int width, int height, boolean copyContours) {
+            List<Detection> detections = detectionPool.getDetections();
+            results.getBack().update(sequence, captureTimeNanos, publishTimeNanos, width, height, detections);
+            results.publish();
+            drawResults.getBack().update(sequence, captureTimeNanos, publishTimeNanos, width, height, detections, null, copyContours);
+            drawResults.publish();
+            sequence++;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.tearabite.ielib.vision;
 
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfPoint;
@@ -9,6 +11,7 @@ import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.imgproc.Moments;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -16,6 +19,9 @@ import java.util.List;
  * A utility class for common vision operations
  */
 public class OpenCVUtil {
+    private static final Scalar BLACK = new Scalar(0);
+    private static final Scalar MORPH_BORDER_VALUE = Scalar.all(Double.MAX_VALUE);
+    private static final int MORPH_BORDER_TYPE = Core.BORDER_CONSTANT | Core.BORDER_ISOLATED;
 
     public static void drawPoint(Mat img, Point point, Scalar color) {
         Imgproc.circle(img, point, 3, color,  -1);
@@ -41,15 +47,66 @@ public class OpenCVUtil {
     }
 
     public static void drawConvexHull(Mat img, MatOfPoint contour, Scalar color) {
-        MatOfInt hull =  new MatOfInt();
-        Imgproc.convexHull(contour, hull);
-        Imgproc.drawContours(img, Collections.singletonList(convertIndexesToPoints(contour, hull)), 0, color, 2);
+        Imgproc.drawContours(img, Collections.singletonList(convexHull(contour, new MatOfInt())), 0, color, 2);
     }
 
     public static void fillConvexHull(Mat img, MatOfPoint contour, Scalar color) {
-        MatOfInt hull =  new MatOfInt();
-        Imgproc.convexHull(contour, hull);
-        Imgproc.drawContours(img, Collections.singletonList(convertIndexesToPoints(contour, hull)), 0, color, -1);
+        Imgproc.drawContours(img, Collections.singletonList(convexHull(contour, new MatOfInt())), 0, color, -1);
+    }
+
+    /**
+     * Computes the convex hull of a contour as a polygon.
+     * @param hullIndexes receives the indexes of the hull's points in the contour, and can be reused between calls
+     * @return a new contour of the hull's points, which the caller should release
+     */
+    public static MatOfPoint convexHull(MatOfPoint contour, MatOfInt hullIndexes) {
+        Imgproc.convexHull(contour, hullIndexes);
+        return convertIndexesToPoints(contour, hullIndexes);
+    }
+
+    /**
+     * @return the area of the convex hull of a contour
+     */
+    public static double convexHullArea(MatOfPoint contour, MatOfInt hullIndexes) {
+        MatOfPoint hull = convexHull(contour, hullIndexes);
+        try {
+            return Imgproc.contourArea(hull);
+        } finally {
+            hull.release();
+        }
+    }
+
+    /**
+     * Traces the outer contour of one connected component from a label image.
+     * Only the pixels inside the component's bounding box are read.
+     * @param labels the CV_32S label image from Imgproc.connectedComponents
+     * @param label the component's label
+     * @param boundingRect the component's bounding box in the label image
+     * @return a new contour in label image coordinates, which is empty if the label isn't in the box
+     */
+    public static MatOfPoint traceComponent(Mat labels, int label, Rect boundingRect) {
+        Mat labelsRoi = labels.submat(boundingRect);
+        Mat componentMask = new Mat();
+        Mat hierarchy = new Mat();
+        List<MatOfPoint> contours = new ArrayList<>();
+        try {
+            Core.compare(labelsRoi, new Scalar(label), componentMask, Core.CMP_EQ);
+            Imgproc.findContours(componentMask, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE,
+                    new Point(boundingRect.x, boundingRect.y));
+        } finally {
+            labelsRoi.release();
+            componentMask.release();
+            hierarchy.release();
+        }
+
+        // An 8-connected component has a single outer contour
+        MatOfPoint traced = getLargestContour(contours);
+        for (MatOfPoint other : contours) {
+            if (other != traced) {
+                other.release();
+            }
+        }
+        return traced != null ? traced : new MatOfPoint();
     }
 
     public static MatOfPoint convertIndexesToPoints(MatOfPoint contour, MatOfInt indexes) {
@@ -66,15 +123,71 @@ public class OpenCVUtil {
         return hull;
     }
 
+    /**
+     * Thresholds an HSV image against several color ranges and combines the results.
+     * The mask is written in place, so its buffer is only reallocated when the image size changes.
+     * @param hsv The HSV image
+     * @param colorRanges The ranges a pixel may fall in to be part of the mask
+     * @param tmpMask Scratch space for the second and later ranges
+     * @param mask The output mask
+     */
+    public static void inRanges(Mat hsv, ScalarRange[] colorRanges, Mat tmpMask, Mat mask) {
+        if (colorRanges.length == 0) {
+            mask.create(hsv.rows(), hsv.cols(), CvType.CV_8UC1);
+            mask.setTo(BLACK);
+        }
+        for (int i = 0; i < colorRanges.length; i++) {
+            ScalarRange colorRange = colorRanges[i];
+            if (i == 0) {
+                Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), mask);
+            } else {
+                Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), tmpMask);
+                Core.bitwise_or(mask, tmpMask, mask);
+            }
+        }
+    }
+
+    /**
+     * Erodes and then dilates a mask in place to remove speckles.
+     * The mask may be a submat; pixels outside of it are never read.
+     */
+    public static void erodeDilate(Mat mask, Mat kernel, Point anchor, int iterations) {
+        Imgproc.erode(mask, mask, kernel, anchor, iterations, MORPH_BORDER_TYPE, MORPH_BORDER_VALUE);
+        Imgproc.dilate(mask, mask, kernel, anchor, iterations, MORPH_BORDER_TYPE, MORPH_BORDER_VALUE);
+    }
+
     public static MatOfPoint getLargestContour(List<MatOfPoint> contours) {
-        if (contours.size() == 0) {
-            return null;
+        MatOfPoint largest = null;
+        double largestArea = -1;
+        for (int i = 0; i < contours.size(); i++) {
+            double area = Imgproc.contourArea(contours.get(i));
+            if (area > largestArea) {
+                largest = contours.get(i);
+                largestArea = area;
+            }
         }
-        return getLargestContours(contours, 1).get(0);
+        return largest;
     }
 
+    /**
+     * Returns the largest contours ordered from largest to smallest area.
+     * Each area is computed once and the selection uses a bounded heap, so this is O(n log k).
+     * @param contours The contours to select from. The list is not modified.
+     * @param numContours The maximum number of contours to return
+     * @return A new list of at most numContours contours
+     */
     public static List<MatOfPoint> getLargestContours(List<MatOfPoint> contours, int numContours) {
-        Collections.sort(contours, (a, b) -> (int) Imgproc.contourArea(b) - (int) Imgproc.contourArea(a));
-        return contours.subList(0, Math.min(numContours, contours.size()));
+        TopKSelector selector = new TopKSelector(numContours);
+        selector.reset(numContours);
+        for (int i = 0; i < contours.size(); i++) {
+            selector.offer(i, Imgproc.contourArea(contours.get(i)));
+        }
+
+        int count = selector.sortDescending();
+        List<MatOfPoint> largest = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            largest.add(contours.get(selector.getIndex(i)));
+        }
+        return largest;
     }
 }
\ No newline at end of file
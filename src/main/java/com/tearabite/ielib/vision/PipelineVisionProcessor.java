@@ -0,0 +1,227 @@
+package com.tearabite.ielib.vision;
+
+import android.graphics.Canvas;
+
+import com.tearabite.ielib.common.LatencyHistogram;
+import com.tearabite.ielib.common.TripleBuffer;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A vision processor built from a list of {@link VisionStage}s that ends in a mask, whose largest
+ * contours become the detections. Buffers between stages come from a shared {@link MatPool}, stages
+ * that can run in place write over their input, and every stage is timed into its own histogram.
+ * <pre>
+ * PipelineVisionProcessor processor = new PipelineVisionProcessor()
+ *         .addStage(VisionStages.gaussianBlur(new Size(5, 5)))
+ *         .addStage(VisionStages.rgbToHsv())
+ *         .addStage(VisionStages.inRanges(FTCColors.FTC_BLUE_RANGE))
+ *         .addStage(VisionStages.erodeDilate(2));
+ * </pre>
+ */
+public class PipelineVisionProcessor implements VisionProcessor {
+    private static final String CONTOURS = "Contours";
+
+    /**
+     * The maximum number of detections to report each frame, largest first
+     */
+    @Getter @Setter private int maxDetections = 1;
+
+    @Getter @Setter private double minimumAreaThreshold;
+    @Getter @Setter private double maximumAreaThreshold = Double.MAX_VALUE;
+
+    /**
+     * The buffers shared by the stages
+     */
+    @Getter private final MatPool pool = new MatPool();
+
+    /**
+     * Draws the detections in onDrawFrame. Its detail level and colors can be changed.
+     */
+    @Getter private final DetectionOverlay overlay = new DetectionOverlay();
+
+    private VisionStage[] stages = new VisionStage[0];
+    private LatencyHistogram[] histograms = { new LatencyHistogram() };
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final DetectionPool detectionPool = new DetectionPool();
+    private final TripleBuffer<DetectionResult> results = new TripleBuffer<>(DetectionResult::new);
+    private final TripleBuffer<DetectionResult> drawResults = new TripleBuffer<>(DetectionResult::new);
+    private long sequence;
+    private boolean initialized;
+
+    /**
+     * @return a pipeline equivalent to BasicColorDetectionVisionProcessor's default HSV path
+     */
+    public static PipelineVisionProcessor colorDetection(ScalarRange... colorRanges) {
+        return new PipelineVisionProcessor()
+                .addStage(VisionStages.gaussianBlur(new Size(7, 7)))
+                .addStage(VisionStages.rgbToHsv())
+                .addStage(VisionStages.inRanges(colorRanges))
+                .addStage(VisionStages.erodeDilate(2));
+    }
+
+    /**
+     * Appends a stage. Stages should be added before the processor is attached to a portal.
+     * @return this processor
+     */
+    public PipelineVisionProcessor addStage(VisionStage stage) {
+        VisionStage[] grown = Arrays.copyOf(stages, stages.length + 1);
+        grown[stages.length] = stage;
+        stages = grown;
+        LatencyHistogram[] grownHistograms = Arrays.copyOf(histograms, histograms.length + 1);
+        grownHistograms[histograms.length] = new LatencyHistogram();
+        histograms = grownHistograms;
+        if (initialized) {
+            stage.init(pool.getWidth(), pool.getHeight(), pool);
+        }
+        return this;
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+        pool.init(width, height);
+        for (VisionStage stage : stages) {
+            stage.init(width, height, pool);
+        }
+        detectionPool.setFrameSize(new Size(width, height));
+        detectionPool.ensureCapacity(Math.max(1, maxDetections));
+        initialized = true;
+    }
+
+    @Override
+    public Object processFrame(Mat input, long captureTimeNanos) {
+        long frameStart = System.nanoTime();
+        long start = frameStart;
+
+        Mat current = input;
+        for (int i = 0; i < stages.length; i++) {
+            VisionStage stage = stages[i];
+            int outputType = stage.getOutputType(current.type());
+            Mat output;
+            if (current != input && stage.canRunInPlace() && outputType == current.type()) {
+                output = current;
+            } else {
+                output = pool.acquire(current.rows(), current.cols(), outputType);
+            }
+
+            stage.apply(current, output);
+            if (current != input && current != output) {
+                pool.release(current);
+            }
+            current = output;
+            start = record(histograms[i], start);
+        }
+
+        if (current.type() != CvType.CV_8UC1) {
+            throw new IllegalStateException("The last stage must produce a CV_8UC1 mask, not " + CvType.typeToString(current.type()));
+        }
+
+        detectionPool.setAreaThresholds(minimumAreaThreshold, maximumAreaThreshold);
+        detectionPool.findContours(current, 0, 0);
+        detectionPool.select(maxDetections);
+        if (current != input) {
+            pool.release(current);
+        }
+        long now = record(histograms[stages.length], start);
+        total.record(now - frameStart);
+
+        List<Detection> detections = detectionPool.getDetections();
+        results.getBack().update(sequence, captureTimeNanos, now, input.cols(), input.rows(), detections);
+        results.publish();
+        drawResults.getBack().update(sequence, captureTimeNanos, now, input.cols(), input.rows(), detections, null, overlay.needsContours());
+        drawResults.publish();
+        sequence++;
+        return input;
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        overlay.draw(canvas, drawResults.getFront(), scaleBmpPxToCanvasPx, scaleCanvasDensity);
+    }
+
+    /**
+     * @return the newest published result, see {@link BasicColorDetectionVisionProcessor#getLatestResult()}
+     */
+    public DetectionResult getLatestResult() {
+        return results.getFront();
+    }
+
+    /**
+     * @return the detections from the last frame, largest first. The list is owned by the camera thread.
+     */
+    public List<Detection> getDetections() {
+        return detectionPool.getDetections();
+    }
+
+    /**
+     * @return the number of stages, not counting the contour search at the end
+     */
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    /**
+     * @param i the index of a stage, or {@link #getStageCount()} for the contour search
+     * @return the name the stage's timings are reported under
+     */
+    public String getStageName(int i) {
+        return i == stages.length ? CONTOURS : stages[i].getName();
+    }
+
+    /**
+     * @param i the index of a stage, or {@link #getStageCount()} for the contour search
+     * @return the latency of the stage
+     */
+    public LatencyHistogram getStageHistogram(int i) {
+        return histograms[i];
+    }
+
+    /**
+     * @return the latency of whole frames
+     */
+    public LatencyHistogram getTotalHistogram() {
+        return total;
+    }
+
+    /**
+     * Adds the mean, p95 and max latency of every stage to the telemetry.
+     */
+    public void addStatsTo(Telemetry telemetry) {
+        for (int i = 0; i <= stages.length; i++) {
+            addHistogram(telemetry, getStageName(i), histograms[i]);
+        }
+        addHistogram(telemetry, "Total", total);
+    }
+
+    /**
+     * Clears the latency histograms.
+     */
+    public void resetStats() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        total.reset();
+    }
+
+    private static void addHistogram(Telemetry telemetry, String name, LatencyHistogram histogram) {
+        telemetry.addData(name, "mean %.2fms p95 %.2fms max %.2fms",
+                histogram.getMeanNanos() / 1e6, histogram.getPercentileNanos(95) / 1e6, histogram.getMaxNanos() / 1e6);
+    }
+
+    private static long record(LatencyHistogram histogram, long start) {
+        long now = System.nanoTime();
+        histogram.record(now - start);
+        return now;
+    }
+}
@@ -0,0 +1,131 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import lombok.Getter;
+
+/**
+ * Pixel memory that Java and OpenCV share without copying.
+ * The pixels live in a direct ByteBuffer, and {@link #getMat()} is a Mat header over the same memory,
+ * so an OpenCV call that writes into that Mat fills the buffer directly, and Java kernels that write
+ * into the buffer are immediately visible to OpenCV. This replaces the Mat.get and Mat.put copies
+ * into Java arrays that custom per-pixel code would otherwise make every frame.
+ * The Java OpenCV bindings can't wrap memory a Mat already owns, so pixels from any other Mat, such
+ * as the camera frame, are brought in with one native copy by {@link #copyFrom(Mat)}.
+ * Read and write the buffer with its absolute methods only, since kernels may share it across threads.
+ */
+public class PixelBuffer {
+    private ByteBuffer buffer;
+    private Mat mat;
+    private long address;
+
+    @Getter private int rows;
+    @Getter private int cols;
+    @Getter private int type = -1;
+
+    /**
+     * The number of channels per pixel
+     */
+    @Getter private int channels;
+
+    /**
+     * The number of bytes per pixel
+     */
+    @Getter private int pixelSize;
+
+    /**
+     * The number of bytes per row
+     */
+    @Getter private int step;
+
+    /**
+     * Makes the buffer the given size and type. Memory is only allocated when they change.
+     * @return this buffer
+     */
+    public PixelBuffer create(int rows, int cols, int type) {
+        if (mat != null && rows == this.rows && cols == this.cols && type == this.type) {
+            return this;
+        }
+
+        release();
+        int pixelSize = CvType.ELEM_SIZE(type);
+        this.buffer = ByteBuffer.allocateDirect(rows * cols * pixelSize).order(ByteOrder.nativeOrder());
+        this.mat = new Mat(rows, cols, type, buffer);
+        this.address = mat.dataAddr();
+        this.rows = rows;
+        this.cols = cols;
+        this.type = type;
+        this.channels = CvType.channels(type);
+        this.pixelSize = pixelSize;
+        this.step = cols * pixelSize;
+        return this;
+    }
+
+    /**
+     * Copies a Mat's pixels into the buffer, resizing it to match. Copying from {@link #getMat()} itself does nothing.
+     * @return this buffer
+     */
+    public PixelBuffer copyFrom(Mat source) {
+        if (source == mat) {
+            checkAttached();
+            return this;
+        }
+
+        create(source.rows(), source.cols(), source.type());
+        source.copyTo(mat);
+        checkAttached();
+        return this;
+    }
+
+    /**
+     * Use this Mat as the destination of OpenCV calls to fill the buffer without a copy. Those calls
+     * must not change its size or type, or OpenCV would give it new memory; {@link #checkAttached()}
+     * detects that.
+     * @return the Mat header over the buffer's memory
+     */
+    public Mat getMat() {
+        return mat;
+    }
+
+    /**
+     * @return the pixel memory, in native byte order
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index in the buffer of the first byte of a pixel
+     */
+    public int getIndex(int row, int col) {
+        return row * step + col * pixelSize;
+    }
+
+    /**
+     * @throws IllegalStateException if an OpenCV call reallocated the Mat, so it no longer shares the buffer's memory
+     */
+    public void checkAttached() {
+        if (mat == null || mat.dataAddr() != address) {
+            throw new IllegalStateException("The Mat no longer shares the buffer's memory; it was released or resized by OpenCV");
+        }
+    }
+
+    /**
+     * Releases the Mat header. The buffer's memory is freed once it is garbage collected.
+     */
+    public void release() {
+        if (mat != null) {
+            mat.release();
+        }
+        mat = null;
+        buffer = null;
+        address = 0;
+        rows = 0;
+        cols = 0;
+        type = -1;
+    }
+}
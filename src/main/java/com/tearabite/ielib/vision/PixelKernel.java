@@ -0,0 +1,21 @@
+package com.tearabite.ielib.vision;
+
+/**
+ * Custom per-pixel logic over {@link PixelBuffer}s, run by a {@link PixelKernelExecutor}.
+ * The executor hands the kernel one tile of the frame at a time, possibly on several threads at
+ * once, so a kernel must only write the pixels of its tile, must use the buffers' absolute get and
+ * put methods, and must not keep state between tiles other than read-only settings.
+ * Common kernels are made by {@link PixelKernels}.
+ */
+public interface PixelKernel {
+    /**
+     * @return the OpenCV type of the output for a given input type, such as CvType.CV_8UC1
+     */
+    int getOutputType(int inputType);
+
+    /**
+     * Processes the pixels in rows [startRow, endRow) and columns [startCol, endCol).
+     * @param output has the input's size and the declared output type
+     */
+    void apply(PixelBuffer input, PixelBuffer output, int startRow, int endRow, int startCol, int endCol);
+}
@@ -0,0 +1,160 @@
+package com.tearabite.ielib.vision;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs {@link PixelKernel}s over a frame in tiles, on the calling thread alone or together with a
+ * fixed pool of daemon threads. Threads take the next unprocessed tile until none are left, so a
+ * slow tile doesn't hold the others back. With one thread the tiles run in order on the caller.
+ * It is meant to be used from one thread, normally the camera thread.
+ */
+public class PixelKernelExecutor {
+    /**
+     * The height of a tile in rows, or 0 to split the frame into a few bands per thread
+     */
+    @Getter @Setter private int tileRows;
+
+    /**
+     * The width of a tile in columns, or 0 for whole rows
+     */
+    @Getter @Setter private int tileCols;
+
+    @Getter private final int threadCount;
+
+    private final ExecutorService executor;
+    private final AtomicInteger nextTile = new AtomicInteger();
+    private final Runnable worker = this::runWorker;
+    // The helpers still running, counted down as they finish; the last one wakes the waiting caller
+    private final AtomicInteger remaining = new AtomicInteger();
+    private Thread waiter;
+    private volatile RuntimeException error;
+
+    private PixelKernel kernel;
+    private PixelBuffer input;
+    private PixelBuffer output;
+    private int tileCount;
+    private int tilesPerRow;
+    private int rowsPerTile;
+    private int colsPerTile;
+
+    /**
+     * @param threadCount the number of threads kernels run on, including the caller's
+     */
+    public PixelKernelExecutor(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("There must be at least one thread");
+        }
+
+        this.threadCount = threadCount;
+        this.executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "PixelKernelExecutor");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * @return an executor that runs kernels on the calling thread only
+     */
+    public static PixelKernelExecutor serial() {
+        return new PixelKernelExecutor(1);
+    }
+
+    /**
+     * Runs a kernel over every pixel of the input, resizing the output to match, and waits for it to finish.
+     */
+    public void run(PixelKernel kernel, PixelBuffer input, PixelBuffer output) {
+        input.checkAttached();
+        output.create(input.getRows(), input.getCols(), kernel.getOutputType(input.getType()));
+
+        int rows = input.getRows();
+        int cols = input.getCols();
+        this.rowsPerTile = tileRows > 0 ? tileRows : Math.max(1, (rows + threadCount * 4 - 1) / (threadCount * 4));
+        this.colsPerTile = tileCols > 0 ? tileCols : Math.max(1, cols);
+        this.tilesPerRow = (cols + colsPerTile - 1) / colsPerTile;
+        this.tileCount = ((rows + rowsPerTile - 1) / rowsPerTile) * tilesPerRow;
+        this.kernel = kernel;
+        this.input = input;
+        this.output = output;
+        this.error = null;
+        nextTile.set(0);
+
+        int helpers = Math.min(threadCount - 1, tileCount - 1);
+        if (helpers > 0) {
+            waiter = Thread.currentThread();
+            remaining.set(helpers);
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(worker);
+            }
+        }
+        try {
+            runTiles();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        if (helpers > 0) {
+            awaitHelpers();
+        }
+
+        this.kernel = null;
+        this.input = null;
+        this.output = null;
+        RuntimeException failure = error;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            runTiles();
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            if (remaining.decrementAndGet() == 0) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    private void runTiles() {
+        int tile;
+        while ((tile = nextTile.getAndIncrement()) < tileCount) {
+            int startRow = (tile / tilesPerRow) * rowsPerTile;
+            int startCol = (tile % tilesPerRow) * colsPerTile;
+            int endRow = Math.min(input.getRows(), startRow + rowsPerTile);
+            int endCol = Math.min(input.getCols(), startCol + colsPerTile);
+            kernel.apply(input, output, startRow, endRow, startCol, endCol);
+        }
+    }
+
+    /**
+     * Parks until every helper has finished. An interrupt would stop park from blocking, so it is
+     * cleared while waiting and restored afterwards.
+     */
+    private void awaitHelpers() {
+        boolean interrupted = false;
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
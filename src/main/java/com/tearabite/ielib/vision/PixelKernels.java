@@ -0,0 +1,57 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.CvType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Factories for common {@link PixelKernel}s.
+ */
+public class PixelKernels {
+    private static final int WEIGHT_BITS = 8;
+
+    private PixelKernels() {
+    }
+
+    /**
+     * Scores every pixel of an 8-bit RGB or RGBA frame as a weighted sum of its channels, which can
+     * pick out colors no single HSV range covers, such as "more blue than red".
+     * Negative weights are allowed.
+     * @param threshold the score a pixel must exceed to be set in the CV_8UC1 mask
+     * @return a kernel that writes 255 for pixels scoring above the threshold and 0 for the rest
+     */
+    public static PixelKernel weightedThreshold(double redWeight, double greenWeight, double blueWeight, double threshold) {
+        // Fixed-point weights keep the inner loop in integer arithmetic
+        final int red = (int) Math.round(redWeight * (1 << WEIGHT_BITS));
+        final int green = (int) Math.round(greenWeight * (1 << WEIGHT_BITS));
+        final int blue = (int) Math.round(blueWeight * (1 << WEIGHT_BITS));
+        final long limit = (long) Math.floor(threshold * (1 << WEIGHT_BITS));
+
+        return new PixelKernel() {
+            @Override
+            public int getOutputType(int inputType) {
+                if (CvType.depth(inputType) != CvType.CV_8U || CvType.channels(inputType) < 3) {
+                    throw new IllegalArgumentException("Expected an 8-bit RGB or RGBA frame");
+                }
+                return CvType.CV_8UC1;
+            }
+
+            @Override
+            public void apply(PixelBuffer input, PixelBuffer output, int startRow, int endRow, int startCol, int endCol) {
+                ByteBuffer in = input.getBuffer();
+                ByteBuffer out = output.getBuffer();
+                int pixelSize = input.getPixelSize();
+                for (int row = startRow; row < endRow; row++) {
+                    int p = input.getIndex(row, startCol);
+                    int m = output.getIndex(row, startCol);
+                    for (int col = startCol; col < endCol; col++, p += pixelSize, m++) {
+                        long score = (long) red * (in.get(p) & 0xFF)
+                                + (long) green * (in.get(p + 1) & 0xFF)
+                                + (long) blue * (in.get(p + 2) & 0xFF);
+                        out.put(m, score > limit ? (byte) 255 : 0);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import lombok.Getter;
+
+/**
+ * A blob being considered for detection, as seen by a {@link ShapeFilterChain}.
+ * The area is known up front; every other property is computed the first time a filter asks for it
+ * and then cached, so a candidate rejected by a cheap filter never pays for the expensive ones.
+ * A candidate is reused for every blob of a frame and is owned by the camera thread.
+ */
+public class ShapeCandidate {
+    private MatOfPoint contour;
+    private boolean ownsContour;
+    private Mat labels;
+    private int label;
+    private final MatOfInt hullIndexes = new MatOfInt();
+    private final Rect boundingRect = new Rect();
+    private boolean hasBoundingRect;
+    private boolean hasCenter;
+    private double centerX;
+    private double centerY;
+    private double polygonArea;
+    private double hullArea;
+
+    /**
+     * The blob's area in pixels, as used for the area thresholds
+     */
+    @Getter private double area;
+
+    @Getter private int frameWidth;
+    @Getter private int frameHeight;
+
+    /**
+     * Starts considering a contour.
+     */
+    void reset(MatOfPoint contour, double area, int frameWidth, int frameHeight) {
+        clear(frameWidth, frameHeight);
+        this.contour = contour;
+        this.area = area;
+        this.polygonArea = area;
+    }
+
+    /**
+     * Starts considering a connected component, whose bounding box and center are already known.
+     * @param boundingRect the component's bounding box in the label image
+     */
+    void reset(Mat labels, int label, Rect boundingRect, double area, double centerX, double centerY, int frameWidth, int frameHeight) {
+        clear(frameWidth, frameHeight);
+        this.labels = labels;
+        this.label = label;
+        this.area = area;
+        this.boundingRect.x = boundingRect.x;
+        this.boundingRect.y = boundingRect.y;
+        this.boundingRect.width = boundingRect.width;
+        this.boundingRect.height = boundingRect.height;
+        this.hasBoundingRect = true;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.hasCenter = true;
+    }
+
+    /**
+     * Releases the contour traced for a component, if any, and forgets the blob.
+     */
+    void release() {
+        clear(frameWidth, frameHeight);
+    }
+
+    /**
+     * The returned rect is owned by the candidate and must not be modified.
+     * @return the pixel bounding box of the blob
+     */
+    public Rect getBoundingRect() {
+        if (!hasBoundingRect) {
+            Rect rect = Imgproc.boundingRect(contour);
+            boundingRect.x = rect.x;
+            boundingRect.y = rect.y;
+            boundingRect.width = rect.width;
+            boundingRect.height = rect.height;
+            hasBoundingRect = true;
+        }
+        return boundingRect;
+    }
+
+    /**
+     * @return the width of the bounding box divided by its height
+     */
+    public double getAspectRatio() {
+        Rect rect = getBoundingRect();
+        return rect.height > 0 ? (double) rect.width / rect.height : 0;
+    }
+
+    /**
+     * @return the fraction of the bounding box the blob fills
+     */
+    public double getExtent() {
+        Rect rect = getBoundingRect();
+        double boxArea = (double) rect.width * rect.height;
+        return boxArea > 0 ? area / boxArea : 0;
+    }
+
+    /**
+     * @return the x pixel coordinate of the blob's centroid, from its moments for contours
+     */
+    public double getCenterX() {
+        computeCenter();
+        return centerX;
+    }
+
+    /**
+     * @return the y pixel coordinate of the blob's centroid, from its moments for contours
+     */
+    public double getCenterY() {
+        computeCenter();
+        return centerY;
+    }
+
+    /**
+     * Compares the contour polygon to its convex hull. For components the contour is traced first.
+     * @return the fraction of its convex hull the blob fills
+     */
+    public double getSolidity() {
+        if (Double.isNaN(hullArea)) {
+            MatOfPoint polygon = getContour();
+            if (Double.isNaN(polygonArea)) {
+                polygonArea = Imgproc.contourArea(polygon);
+            }
+            hullArea = polygon.empty() ? 0 : OpenCVUtil.convexHullArea(polygon, hullIndexes);
+        }
+        return hullArea > 0 ? polygonArea / hullArea : 0;
+    }
+
+    /**
+     * @return the blob's contour, traced from the labels for a component. It is owned by the candidate.
+     */
+    public MatOfPoint getContour() {
+        if (contour == null && labels != null) {
+            contour = OpenCVUtil.traceComponent(labels, label, boundingRect);
+            ownsContour = true;
+        }
+        return contour;
+    }
+
+    private void computeCenter() {
+        if (hasCenter) {
+            return;
+        }
+
+        Moments moments = Imgproc.moments(contour);
+        if (moments.m00 != 0) {
+            centerX = moments.m10 / moments.m00;
+            centerY = moments.m01 / moments.m00;
+        } else {
+            Rect rect = getBoundingRect();
+            centerX = rect.x + rect.width / 2.0;
+            centerY = rect.y + rect.height / 2.0;
+        }
+        hasCenter = true;
+    }
+
+    private void clear(int frameWidth, int frameHeight) {
+        if (ownsContour && contour != null) {
+            contour.release();
+        }
+        this.contour = null;
+        this.ownsContour = false;
+        this.labels = null;
+        this.hasBoundingRect = false;
+        this.hasCenter = false;
+        this.polygonArea = Double.NaN;
+        this.hullArea = Double.NaN;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+}
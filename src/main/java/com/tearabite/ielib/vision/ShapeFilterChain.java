@@ -0,0 +1,189 @@
+package com.tearabite.ielib.vision;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.Arrays;
+
+/**
+ * A list of shape filters that candidates must pass, on top of the area thresholds, to become detections.
+ * Filters are kept sorted by how expensive the properties they read are, so the cheap bounding-box
+ * checks run first and a candidate they reject never has its moments or convex hull computed.
+ * Filters of the same cost run in the order they were added. Every filter counts the candidates it rejects.
+ * <pre>
+ * ShapeFilterChain filters = new ShapeFilterChain()
+ *         .solidity(0.8, 1)
+ *         .aspectRatio(0.5, 2)
+ *         .region(0, 0.5, 1, 1);
+ * processor.setShapeFilters(filters);
+ * </pre>
+ * The counters are written by the camera thread, so values read elsewhere may be a frame behind.
+ */
+public class ShapeFilterChain {
+    /**
+     * How expensive the properties a filter reads are, cheapest first.
+     * BoundingBox covers the area, bounding box, aspect ratio and extent. Moments covers the centroid.
+     * Hull covers the solidity, which needs the convex hull and, for components, the traced contour.
+     */
+    public enum Cost { BoundingBox, Moments, Hull }
+
+    /**
+     * A test a candidate must pass.
+     */
+    public interface Filter {
+        /**
+         * @return whether the candidate should be kept
+         */
+        boolean test(ShapeCandidate candidate);
+    }
+
+    private String[] names = new String[0];
+    private Cost[] costs = new Cost[0];
+    private Filter[] filters = new Filter[0];
+    private long[] rejections = new long[0];
+    private long tested;
+    private long accepted;
+
+    /**
+     * Adds a filter in cost order.
+     * @param name the name its rejections are reported under
+     * @return this chain
+     */
+    public ShapeFilterChain add(String name, Cost cost, Filter filter) {
+        int index = 0;
+        while (index < costs.length && costs[index].compareTo(cost) <= 0) {
+            index++;
+        }
+
+        names = insert(names, index, name);
+        costs = insert(costs, index, cost);
+        filters = insert(filters, index, filter);
+        rejections = new long[filters.length];
+        return this;
+    }
+
+    /**
+     * Keeps candidates whose bounding box width divided by height is within the range.
+     */
+    public ShapeFilterChain aspectRatio(final double min, final double max) {
+        return add("AspectRatio", Cost.BoundingBox, candidate -> {
+            double ratio = candidate.getAspectRatio();
+            return ratio >= min && ratio <= max;
+        });
+    }
+
+    /**
+     * Keeps candidates that fill a fraction of their bounding box within the range.
+     */
+    public ShapeFilterChain extent(final double min, final double max) {
+        return add("Extent", Cost.BoundingBox, candidate -> {
+            double extent = candidate.getExtent();
+            return extent >= min && extent <= max;
+        });
+    }
+
+    /**
+     * Keeps candidates whose centroid is inside a region given in fractions of the frame, with 0, 0 at the top left.
+     */
+    public ShapeFilterChain region(final double left, final double top, final double right, final double bottom) {
+        return add("Region", Cost.Moments, candidate -> {
+            double x = candidate.getCenterX() / candidate.getFrameWidth();
+            double y = candidate.getCenterY() / candidate.getFrameHeight();
+            return x >= left && x <= right && y >= top && y <= bottom;
+        });
+    }
+
+    /**
+     * Keeps candidates that fill a fraction of their convex hull within the range.
+     */
+    public ShapeFilterChain solidity(final double min, final double max) {
+        return add("Solidity", Cost.Hull, candidate -> {
+            double solidity = candidate.getSolidity();
+            return solidity >= min && solidity <= max;
+        });
+    }
+
+    /**
+     * Runs the filters in cost order until one rejects the candidate.
+     * @return whether every filter kept the candidate
+     */
+    public boolean test(ShapeCandidate candidate) {
+        tested++;
+        for (int i = 0; i < filters.length; i++) {
+            if (!filters[i].test(candidate)) {
+                rejections[i]++;
+                return false;
+            }
+        }
+        accepted++;
+        return true;
+    }
+
+    /**
+     * @return the number of filters
+     */
+    public int getFilterCount() {
+        return filters.length;
+    }
+
+    /**
+     * @param i the filter's position in cost order
+     */
+    public String getFilterName(int i) {
+        return names[i];
+    }
+
+    /**
+     * @param i the filter's position in cost order
+     */
+    public Cost getFilterCost(int i) {
+        return costs[i];
+    }
+
+    /**
+     * @param i the filter's position in cost order
+     * @return the number of candidates the filter rejected
+     */
+    public long getRejections(int i) {
+        return rejections[i];
+    }
+
+    /**
+     * @return the number of candidates tested
+     */
+    public long getTested() {
+        return tested;
+    }
+
+    /**
+     * @return the number of candidates that passed every filter
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Clears the counters.
+     */
+    public void resetCounters() {
+        Arrays.fill(rejections, 0);
+        tested = 0;
+        accepted = 0;
+    }
+
+    /**
+     * Adds the rejections of every filter, and how many candidates passed, to the telemetry.
+     */
+    public void addTo(Telemetry telemetry) {
+        for (int i = 0; i < filters.length; i++) {
+            telemetry.addData(names[i], "rejected %d", rejections[i]);
+        }
+        telemetry.addData("Accepted", "%d of %d", accepted, tested);
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        T[] grown = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, grown, index + 1, array.length - index);
+        grown[index] = value;
+        return grown;
+    }
+}
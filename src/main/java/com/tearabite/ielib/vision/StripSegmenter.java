@@ -0,0 +1,211 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.ANCHOR;
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.STRUCTURING_ELEMENT;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Segments a frame into a mask in horizontal strips, one per thread.
+ * Each strip is blurred, thresholded and eroded/dilated with enough extra rows above and below it
+ * that the kernels see the same pixels they would in the whole frame, and only the strip's own rows
+ * are copied into the shared mask. The stitched mask is therefore identical to the serial one, and
+ * contours are found on it serially so blobs that cross strip boundaries come out whole.
+ * The camera thread segments the first strip itself while a fixed pool of daemon threads does the rest.
+ */
+class StripSegmenter {
+    private final Strip[] strips;
+    private final ExecutorService executor;
+    // The strips still running, counted down by the workers, which wake the waiting caller at 0
+    private final AtomicInteger remaining = new AtomicInteger();
+    private Thread waiter;
+
+    private Mat input;
+    private Mat mask;
+    private Size blurSize;
+    private BasicColorDetectionVisionProcessor.SegmentationMode segmentationMode;
+    private ScalarRange[] colorRanges;
+    private ColorLookupTable lookupTable;
+    private int erodeDilateIterations;
+
+    /**
+     * @param stripCount the number of strips, and so the number of threads including the caller's
+     */
+    StripSegmenter(int stripCount) {
+        if (stripCount < 1) {
+            throw new IllegalArgumentException("There must be at least one strip");
+        }
+
+        strips = new Strip[stripCount];
+        for (int i = 0; i < stripCount; i++) {
+            strips[i] = new Strip();
+        }
+        executor = stripCount > 1 ? Executors.newFixedThreadPool(stripCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "StripSegmenter");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * @return the number of strips the frame is split into
+     */
+    int getStripCount() {
+        return strips.length;
+    }
+
+    /**
+     * The rows a strip needs beyond its own: the blur's reach, plus how far erosion and then
+     * dilation can carry a wrong pixel from the strip's edge.
+     */
+    static int getOverlap(Size blurSize, int erodeDilateIterations) {
+        int blurRadius = (int) blurSize.height / 2;
+        int morphologyRadius = STRUCTURING_ELEMENT.rows() / 2;
+        return blurRadius + 2 * Math.max(0, erodeDilateIterations) * morphologyRadius;
+    }
+
+    /**
+     * Segments the frame into the mask, which is created if needed, and waits for every strip.
+     * @param lookupTable the table to threshold with in LookupTable mode; each strip applies its own share of it
+     */
+    void segment(Mat input, Mat mask, Size blurSize, BasicColorDetectionVisionProcessor.SegmentationMode segmentationMode,
+                 ScalarRange[] colorRanges, ColorLookupTable lookupTable, int erodeDilateIterations) {
+        mask.create(input.rows(), input.cols(), CvType.CV_8UC1);
+        this.input = input;
+        this.mask = mask;
+        this.blurSize = blurSize;
+        this.segmentationMode = segmentationMode;
+        this.colorRanges = colorRanges;
+        this.lookupTable = lookupTable;
+        this.erodeDilateIterations = erodeDilateIterations;
+
+        int rows = input.rows();
+        int overlap = getOverlap(blurSize, erodeDilateIterations);
+        for (int i = 0; i < strips.length; i++) {
+            Strip strip = strips[i];
+            strip.start = (int) ((long) rows * i / strips.length);
+            strip.end = (int) ((long) rows * (i + 1) / strips.length);
+            strip.top = Math.max(0, strip.start - overlap);
+            strip.bottom = Math.min(rows, strip.end + overlap);
+            strip.error = null;
+        }
+
+        waiter = Thread.currentThread();
+        remaining.set(strips.length - 1);
+        for (int i = 1; i < strips.length; i++) {
+            executor.execute(strips[i]);
+        }
+        strips[0].segment();
+
+        // An interrupt would stop park from blocking, so it is cleared while waiting and restored after
+        boolean interrupted = false;
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.input = null;
+        this.mask = null;
+        for (Strip strip : strips) {
+            if (strip.error != null) {
+                throw strip.error;
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads and frees every strip's buffers.
+     */
+    void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        for (Strip strip : strips) {
+            strip.release();
+        }
+    }
+
+    private class Strip implements Runnable {
+        private final Mat blurred = new Mat();
+        private final Mat hsv = new Mat();
+        private final Mat tmpMask = new Mat();
+        private final Mat stripMask = new Mat();
+        private ColorLookupTable sourceTable;
+        private ColorLookupTable table;
+        private int start;
+        private int end;
+        private int top;
+        private int bottom;
+        private RuntimeException error;
+
+        @Override
+        public void run() {
+            try {
+                segment();
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+
+        private void segment() {
+            Mat inputStrip = null;
+            Mat ownRows = null;
+            Mat maskRows = null;
+            try {
+                inputStrip = input.submat(top, bottom, 0, input.cols());
+                Imgproc.GaussianBlur(inputStrip, blurred, blurSize, 0);
+                if (segmentationMode == BasicColorDetectionVisionProcessor.SegmentationMode.LookupTable) {
+                    getTable().apply(blurred, stripMask);
+                } else {
+                    Imgproc.cvtColor(blurred, hsv, Imgproc.COLOR_RGB2HSV);
+                    OpenCVUtil.inRanges(hsv, colorRanges, tmpMask, stripMask);
+                }
+                OpenCVUtil.erodeDilate(stripMask, STRUCTURING_ELEMENT, ANCHOR, erodeDilateIterations);
+
+                ownRows = stripMask.submat(start - top, end - top, 0, stripMask.cols());
+                maskRows = mask.submat(start, end, 0, mask.cols());
+                ownRows.copyTo(maskRows);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                if (inputStrip != null) {
+                    inputStrip.release();
+                }
+                if (ownRows != null) {
+                    ownRows.release();
+                }
+                if (maskRows != null) {
+                    maskRows.release();
+                }
+            }
+        }
+
+        private ColorLookupTable getTable() {
+            if (sourceTable != lookupTable) {
+                sourceTable = lookupTable;
+                table = lookupTable.share();
+            }
+            return table;
+        }
+
+        private void release() {
+            blurred.release();
+            hsv.release();
+            tmpMask.release();
+            stripMask.release();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tearabite.ielib.vision;
+
+/**
+ * Selects the K largest values offered to it using a bounded min-heap of primitive arrays.
+ * Offering n values costs O(n log k) comparisons and no allocation, so it is cheap to run
+ * over hundreds of candidate contours every frame.
+ */
+public class TopKSelector {
+    private int[] indexes;
+    private double[] values;
+    private int k;
+    private int size;
+
+    /**
+     * @param capacity the largest K this selector will be reset to before it has to grow
+     */
+    public TopKSelector(int capacity) {
+        this.indexes = new int[Math.max(1, capacity)];
+        this.values = new double[Math.max(1, capacity)];
+    }
+
+    /**
+     * Clears the selector and sets how many values it keeps.
+     * @param k the number of largest values to keep
+     */
+    public void reset(int k) {
+        if (k > indexes.length) {
+            indexes = new int[k];
+            values = new double[k];
+        }
+        this.k = Math.max(0, k);
+        this.size = 0;
+    }
+
+    /**
+     * Offers a candidate to the selector.
+     * @param index the caller's index of the candidate
+     * @param value the value the candidate is ranked by
+     */
+    public void offer(int index, double value) {
+        if (size < k) {
+            indexes[size] = index;
+            values[size] = value;
+            siftUp(size++);
+        } else if (k > 0 && value > values[0]) {
+            indexes[0] = index;
+            values[0] = value;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Sorts the kept candidates from largest to smallest value.
+     * This consumes the heap, so it should be called once after all candidates have been offered.
+     * @return the number of kept candidates
+     */
+    public int sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of kept candidates
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the caller's index of the i-th kept candidate
+     */
+    public int getIndex(int i) {
+        return indexes[i];
+    }
+
+    /**
+     * @return the value of the i-th kept candidate
+     */
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (values[parent] <= values[i]) {
+                return;
+            }
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= end) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < end && values[right] < values[left]) {
+                smallest = right;
+            }
+            if (values[i] <= values[smallest]) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = indexes[a];
+        indexes[a] = indexes[b];
+        indexes[b] = index;
+        double value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
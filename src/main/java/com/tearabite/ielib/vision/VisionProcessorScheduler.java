@@ -0,0 +1,315 @@
+package com.tearabite.ielib.vision;
+
+import android.graphics.Canvas;
+
+import com.tearabite.ielib.common.TripleBuffer;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs several vision processors from one portal within a per-frame time budget.
+ * Each processor has a priority and a target rate, and its cost is measured as a moving average.
+ * Every frame, the processors that are due run in priority order, most overdue first within a priority,
+ * and a processor whose expected cost would take the frame over budget is skipped and stays due for
+ * the next frame. {@link Priority#Critical} processors run whenever they are due, whatever the budget.
+ * <pre>
+ * VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20_000_000)
+ *         .add("Tags", localizer, VisionProcessorScheduler.Priority.Critical, 0)
+ *         .add("Blue", BasicColorDetectionVisionProcessor.Blue(), VisionProcessorScheduler.Priority.High, 15)
+ *         .add("Red", BasicColorDetectionVisionProcessor.Red(), VisionProcessorScheduler.Priority.Low, 5);
+ * </pre>
+ * Attach only the scheduler to the portal, not the processors it runs.
+ */
+public class VisionProcessorScheduler implements VisionProcessor {
+    public enum Priority {
+        /**
+         * Runs whenever it is due, even over budget
+         */
+        Critical,
+        High,
+        Normal,
+        Low
+    }
+
+    /**
+     * The time the processors may spend on each frame, in nanoseconds
+     */
+    @Getter @Setter private long frameBudgetNanos;
+
+    /**
+     * The weight of the newest measurement in each processor's average cost, from 0 to 1
+     */
+    @Getter @Setter private double costSmoothing = 0.2;
+
+    /**
+     * A due processor that has been skipped this many frames in a row runs regardless of the budget,
+     * so a low priority processor is slowed down but never starved. 0 lets the budget skip it indefinitely.
+     */
+    @Getter @Setter private int maxSkippedFrames = 30;
+
+    private final LongSupplier clock;
+    private Entry[] entries = new Entry[0];
+    private int[] order = new int[0];
+    private TripleBuffer<Object[]> contexts;
+    private boolean initialized;
+    private long lastFrameNanos;
+    private long frameIntervalNanos;
+
+    /**
+     * The number of frames in which at least one due processor was skipped
+     */
+    @Getter private long overBudgetFrames;
+
+    @Getter private long frames;
+
+    private static class Entry {
+        final String name;
+        final VisionProcessor processor;
+        final Priority priority;
+        final long periodNanos;
+        long lastRunNanos;
+        boolean hasRun;
+        double costNanos;
+        long lastCostNanos;
+        int skippedInRow;
+        long runs;
+        long skips;
+        Object context;
+
+        Entry(String name, VisionProcessor processor, Priority priority, long periodNanos) {
+            this.name = name;
+            this.processor = processor;
+            this.priority = priority;
+            this.periodNanos = periodNanos;
+        }
+    }
+
+    /**
+     * @param frameBudgetNanos the time the processors may spend on each frame, in nanoseconds
+     */
+    public VisionProcessorScheduler(long frameBudgetNanos) {
+        this(frameBudgetNanos, System::nanoTime);
+    }
+
+    /**
+     * @param frameBudgetNanos the time the processors may spend on each frame, in nanoseconds
+     * @param clock the time in nanoseconds, used for both rates and costs. Tests can pass a fake clock.
+     */
+    public VisionProcessorScheduler(long frameBudgetNanos, LongSupplier clock) {
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a processor. Processors should be added before the scheduler is attached to a portal.
+     * @param name the name its stats are reported under
+     * @param targetRate how many times a second to run it, or 0 for every frame
+     * @return this scheduler
+     */
+    public VisionProcessorScheduler add(String name, VisionProcessor processor, Priority priority, double targetRate) {
+        if (processor == null || priority == null) {
+            throw new IllegalArgumentException("The processor and priority are required");
+        }
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("The target rate must not be negative");
+        }
+        if (initialized) {
+            throw new IllegalStateException("Processors must be added before the scheduler is initialized");
+        }
+
+        long period = targetRate == 0 ? 0 : Math.round(1e9 / targetRate);
+        entries = Arrays.copyOf(entries, entries.length + 1);
+        entries[entries.length - 1] = new Entry(name, processor, priority, period);
+        order = new int[entries.length];
+        return this;
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+        final int count = entries.length;
+        contexts = new TripleBuffer<>(() -> new Object[count]);
+        for (Entry entry : entries) {
+            entry.processor.init(width, height, calibration);
+        }
+        initialized = true;
+    }
+
+    @Override
+    public Object processFrame(Mat input, long captureTimeNanos) {
+        long frameStart = clock.getAsLong();
+        if (frames > 0) {
+            frameIntervalNanos = frameStart - lastFrameNanos;
+        }
+        lastFrameNanos = frameStart;
+        int due = sortDue(frameStart);
+
+        long spent = 0;
+        boolean skipped = false;
+        for (int i = 0; i < due; i++) {
+            Entry entry = entries[order[i]];
+            boolean mustRun = entry.priority == Priority.Critical
+                    || !entry.hasRun
+                    || (maxSkippedFrames > 0 && entry.skippedInRow >= maxSkippedFrames);
+            if (!mustRun && spent + Math.round(entry.costNanos) > frameBudgetNanos) {
+                entry.skips++;
+                entry.skippedInRow++;
+                skipped = true;
+                continue;
+            }
+
+            long start = clock.getAsLong();
+            entry.context = entry.processor.processFrame(input, captureTimeNanos);
+            long cost = clock.getAsLong() - start;
+            entry.costNanos = entry.hasRun ? entry.costNanos + costSmoothing * (cost - entry.costNanos) : cost;
+            entry.lastCostNanos = cost;
+            entry.lastRunNanos = frameStart;
+            entry.hasRun = true;
+            entry.skippedInRow = 0;
+            entry.runs++;
+            spent += cost;
+        }
+
+        if (skipped) {
+            overBudgetFrames++;
+        }
+        frames++;
+
+        if (contexts != null) {
+            Object[] back = contexts.getBack();
+            for (int i = 0; i < entries.length; i++) {
+                back[i] = entries[i].context;
+            }
+            contexts.publish();
+        }
+        return null;
+    }
+
+    /**
+     * Puts the indices of the due processors at the front of {@link #order}, by priority and then
+     * by how many periods overdue they are, without allocating. A processor counts as due from half a
+     * frame before its period is up, so a 15 Hz target on a 30 fps camera runs every other frame
+     * instead of every third when frame times jitter.
+     * @return the number of due processors
+     */
+    private int sortDue(long now) {
+        int due = 0;
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            if (!entry.hasRun || now - entry.lastRunNanos + frameIntervalNanos / 2 >= entry.periodNanos) {
+                int j = due++;
+                while (j > 0 && runsBefore(entry, entries[order[j - 1]], now)) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+        }
+        return due;
+    }
+
+    private static boolean runsBefore(Entry a, Entry b, long now) {
+        if (a.priority != b.priority) {
+            return a.priority.ordinal() < b.priority.ordinal();
+        }
+        return lateness(a, now) > lateness(b, now);
+    }
+
+    private static double lateness(Entry entry, long now) {
+        if (!entry.hasRun) {
+            return Double.MAX_VALUE;
+        }
+        long elapsed = now - entry.lastRunNanos;
+        return entry.periodNanos == 0 ? entry.skippedInRow : (double) elapsed / entry.periodNanos;
+    }
+
+    /**
+     * Draws every processor with the context from its latest run, so skipped processors keep their overlay.
+     */
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        if (contexts == null) {
+            return;
+        }
+
+        Object[] front = contexts.getFront();
+        for (int i = 0; i < front.length; i++) {
+            entries[i].processor.onDrawFrame(canvas, onscreenWidth, onscreenHeight, scaleBmpPxToCanvasPx, scaleCanvasDensity, front[i]);
+        }
+    }
+
+    public int getProcessorCount() {
+        return entries.length;
+    }
+
+    public VisionProcessor getProcessor(int i) {
+        return entries[i].processor;
+    }
+
+    public String getName(int i) {
+        return entries[i].name;
+    }
+
+    public Priority getPriority(int i) {
+        return entries[i].priority;
+    }
+
+    /**
+     * @return the number of frames the processor ran on
+     */
+    public long getRuns(int i) {
+        return entries[i].runs;
+    }
+
+    /**
+     * @return the number of frames the processor was due but skipped to stay within the budget
+     */
+    public long getSkips(int i) {
+        return entries[i].skips;
+    }
+
+    /**
+     * @return the processor's average cost in nanoseconds, or 0 before it has run
+     */
+    public double getCostNanos(int i) {
+        return entries[i].costNanos;
+    }
+
+    /**
+     * @return the processor's cost on its latest run, in nanoseconds
+     */
+    public long getLastCostNanos(int i) {
+        return entries[i].lastCostNanos;
+    }
+
+    /**
+     * Adds each processor's runs, skips and average cost to the telemetry.
+     */
+    public void addStatsTo(Telemetry telemetry) {
+        for (Entry entry : entries) {
+            telemetry.addData(entry.name, "%s runs %d skips %d cost %.2fms",
+                    entry.priority, entry.runs, entry.skips, entry.costNanos / 1e6);
+        }
+        telemetry.addData("Over budget", "%d of %d frames", overBudgetFrames, frames);
+    }
+
+    /**
+     * Clears the run and skip counters. The average costs are kept, since they drive scheduling.
+     */
+    public void resetStats() {
+        for (Entry entry : entries) {
+            entry.runs = 0;
+            entry.skips = 0;
+        }
+        overBudgetFrames = 0;
+        frames = 0;
+    }
+}
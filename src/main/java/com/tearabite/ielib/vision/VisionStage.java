@@ -0,0 +1,42 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.Mat;
+
+/**
+ * One step of a {@link PipelineVisionProcessor}, turning an input Mat into an output Mat.
+ * Each stage declares the type of its output, so the pipeline can hand it a pooled buffer of the
+ * right type, and whether it can write over its input, so the pipeline can skip the buffer entirely.
+ * Common stages are made by {@link VisionStages}.
+ */
+public interface VisionStage {
+    /**
+     * @return the name the stage's timings are reported under
+     */
+    String getName();
+
+    /**
+     * @param inputType the OpenCV type of the input, such as CvType.CV_8UC3
+     * @return the OpenCV type of the output
+     */
+    int getOutputType(int inputType);
+
+    /**
+     * @return whether the stage may be given the same Mat as its input and output
+     */
+    default boolean canRunInPlace() {
+        return false;
+    }
+
+    /**
+     * Called from the processor's init, before any frames. Stages that need scratch buffers may acquire them here and keep them.
+     */
+    default void init(int width, int height, MatPool pool) {
+    }
+
+    /**
+     * Processes one frame.
+     * @param input the output of the previous stage, or the camera frame for the first stage, which must not be changed
+     * @param output a Mat of the declared output type and the input's size, which may be the input itself if the stage can run in place
+     */
+    void apply(Mat input, Mat output);
+}
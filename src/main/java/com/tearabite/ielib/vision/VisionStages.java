@@ -0,0 +1,164 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.ANCHOR;
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.STRUCTURING_ELEMENT;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Factories for the stages a color detection pipeline is usually made of.
+ * Blurring and color conversion copy their input internally when run in place, so they ask for
+ * a separate output and let the pool alternate buffers instead.
+ */
+public class VisionStages {
+    private VisionStages() {
+    }
+
+    /**
+     * @return a stage that Gaussian blurs the frame with the given kernel size
+     */
+    public static VisionStage gaussianBlur(final Size kernelSize) {
+        return new VisionStage() {
+            @Override
+            public String getName() {
+                return "Blur";
+            }
+
+            @Override
+            public int getOutputType(int inputType) {
+                return inputType;
+            }
+
+            @Override
+            public void apply(Mat input, Mat output) {
+                Imgproc.GaussianBlur(input, output, kernelSize, 0);
+            }
+        };
+    }
+
+    /**
+     * @param code the Imgproc color conversion code, such as Imgproc.COLOR_RGB2HSV
+     * @param channels the number of channels the conversion produces
+     * @return a stage that converts the frame between color spaces
+     */
+    public static VisionStage convertColor(final int code, final int channels) {
+        return new VisionStage() {
+            @Override
+            public String getName() {
+                return "ColorConversion";
+            }
+
+            @Override
+            public int getOutputType(int inputType) {
+                return CvType.makeType(CvType.depth(inputType), channels);
+            }
+
+            @Override
+            public void apply(Mat input, Mat output) {
+                Imgproc.cvtColor(input, output, code);
+            }
+        };
+    }
+
+    /**
+     * @return a stage that converts an RGB frame to HSV
+     */
+    public static VisionStage rgbToHsv() {
+        return convertColor(Imgproc.COLOR_RGB2HSV, 3);
+    }
+
+    /**
+     * @return a stage that turns the frame into a mask of the pixels inside any of the ranges
+     */
+    public static VisionStage inRanges(final ScalarRange... ranges) {
+        return new VisionStage() {
+            private Mat tmpMask;
+
+            @Override
+            public String getName() {
+                return "Threshold";
+            }
+
+            @Override
+            public int getOutputType(int inputType) {
+                return CvType.CV_8UC1;
+            }
+
+            @Override
+            public void init(int width, int height, MatPool pool) {
+                if (tmpMask == null) {
+                    tmpMask = pool.acquire(CvType.CV_8UC1);
+                }
+            }
+
+            @Override
+            public void apply(Mat input, Mat output) {
+                OpenCVUtil.inRanges(input, ranges, tmpMask, output);
+            }
+        };
+    }
+
+    /**
+     * @return a stage that turns an RGB frame straight into a mask with a {@link ColorLookupTable}
+     */
+    public static VisionStage lookupTable(final ScalarRange... ranges) {
+        return new VisionStage() {
+            private ColorLookupTable table;
+
+            @Override
+            public String getName() {
+                return "Threshold";
+            }
+
+            @Override
+            public int getOutputType(int inputType) {
+                return CvType.CV_8UC1;
+            }
+
+            @Override
+            public void init(int width, int height, MatPool pool) {
+                if (table == null) {
+                    table = new ColorLookupTable(ranges);
+                }
+            }
+
+            @Override
+            public void apply(Mat input, Mat output) {
+                table.apply(input, output);
+            }
+        };
+    }
+
+    /**
+     * @return a stage that erodes and then dilates a mask to remove speckles, in place
+     */
+    public static VisionStage erodeDilate(final int iterations) {
+        return new VisionStage() {
+            @Override
+            public String getName() {
+                return "Morphology";
+            }
+
+            @Override
+            public int getOutputType(int inputType) {
+                return inputType;
+            }
+
+            @Override
+            public boolean canRunInPlace() {
+                return true;
+            }
+
+            @Override
+            public void apply(Mat input, Mat output) {
+                if (input != output) {
+                    input.copyTo(output);
+                }
+                OpenCVUtil.erodeDilate(output, STRUCTURING_ELEMENT, ANCHOR, iterations);
+            }
+        };
+    }
+}
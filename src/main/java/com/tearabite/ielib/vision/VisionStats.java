@@ -0,0 +1,132 @@
+package com.tearabite.ielib.vision;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.tearabite.ielib.common.LatencyHistogram;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * Per-stage latency statistics for a vision processor.
+ * Stage times are summed over a frame, since a stage can run more than once per frame
+ * (for example in tracking mode), and recorded into fixed-bucket histograms when the frame ends.
+ * The age histogram records the time from a frame's capture to the publication of its result.
+ */
+public class VisionStats {
+    private static final float LINE_HEIGHT = 1.25f;
+
+    /**
+     * The timed stages of a color detection pipeline
+     */
+    public enum Stage { Blur, ColorConversion, Threshold, Morphology, Contours, Selection, Total }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final long[] frameNanos = new long[STAGES.length];
+    private final LatencyHistogram age = new LatencyHistogram();
+    private final StringBuilder text = new StringBuilder();
+    private char[] chars = new char[64];
+
+    public VisionStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Adds time spent in a stage during the current frame.
+     */
+    public void add(Stage stage, long nanos) {
+        frameNanos[stage.ordinal()] += nanos;
+    }
+
+    /**
+     * Records the current frame's stage times and result age, then starts a new frame.
+     * @param frameStartNanos when processing of the frame started, from System.nanoTime()
+     * @param captureTimeNanos when the frame was captured, from System.nanoTime()
+     * @param publishTimeNanos when the frame's result was published, from System.nanoTime()
+     */
+    public void endFrame(long frameStartNanos, long captureTimeNanos, long publishTimeNanos) {
+        frameNanos[Stage.Total.ordinal()] = publishTimeNanos - frameStartNanos;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].record(frameNanos[i]);
+            frameNanos[i] = 0;
+        }
+        age.record(publishTimeNanos - captureTimeNanos);
+    }
+
+    /**
+     * @return the histogram of a stage's time per frame
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return the histogram of time between frame capture and result publication
+     */
+    public LatencyHistogram getAgeHistogram() {
+        return age;
+    }
+
+    /**
+     * Clears every histogram.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        age.reset();
+    }
+
+    /**
+     * Adds one line per stage, plus the result age, to the telemetry.
+     */
+    public void addTo(Telemetry telemetry) {
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = getHistogram(stage);
+            telemetry.addData(stage.name(), "mean %.2fms p95 %.2fms max %.2fms",
+                    histogram.getMeanNanos() / 1e6, histogram.getPercentileNanos(95) / 1e6, histogram.getMaxNanos() / 1e6);
+        }
+        telemetry.addData("Age", "mean %.2fms p95 %.2fms max %.2fms",
+                age.getMeanNanos() / 1e6, age.getPercentileNanos(95) / 1e6, age.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * Draws the last frame time and p95 of every stage, plus the result age, as lines of text.
+     * The text is built in reused buffers so this does not allocate.
+     */
+    public void draw(Canvas canvas, float x, float y, Paint paint) {
+        float lineHeight = paint.getTextSize() * LINE_HEIGHT;
+        for (Stage stage : STAGES) {
+            drawLine(canvas, stage.name(), getHistogram(stage), x, y, paint);
+            y += lineHeight;
+        }
+        drawLine(canvas, "Age", age, x, y, paint);
+    }
+
+    private void drawLine(Canvas canvas, String name, LatencyHistogram histogram, float x, float y, Paint paint) {
+        text.setLength(0);
+        text.append(name).append(' ');
+        appendMillis(histogram.getLastNanos());
+        text.append(" p95 ");
+        appendMillis(histogram.getPercentileNanos(95));
+        if (chars.length < text.length()) {
+            chars = new char[text.length()];
+        }
+        text.getChars(0, text.length(), chars, 0);
+        canvas.drawText(chars, 0, text.length(), x, y, paint);
+    }
+
+    private void appendMillis(long nanos) {
+        long hundredths = nanos / 10_000;
+        text.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction).append("ms");
+    }
+}
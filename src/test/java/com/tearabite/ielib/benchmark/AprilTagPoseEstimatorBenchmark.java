@@ -0,0 +1,81 @@
+package com.tearabite.ielib.benchmark;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.tearabite.ielib.localization.AprilTagPoseEstimator;
+
+import org.firstinspires.ftc.robotcore.external.matrices.VectorF;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagLibrary;
+import org.firstinspires.ftc.vision.apriltag.AprilTagMetadata;
+import org.firstinspires.ftc.vision.apriltag.AprilTagPoseFtc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures AprilTagPoseEstimator.estimatePose for backdrop tag detections.
+ * The primitive variants should report a gc.alloc.rate.norm of 0 bytes per operation.
+ */
+@State(Scope.Thread)
+public class AprilTagPoseEstimatorBenchmark {
+    private AprilTagPoseEstimator estimator;
+    private AprilTagPoseEstimator cachedEstimator;
+    private AprilTagDetection detection;
+    private List<AprilTagDetection> detections;
+    private final double[] pose = new double[3];
+    private final double[] poses = new double[9];
+
+    @Setup
+    public void setup() {
+        AprilTagMetadata metadata = new AprilTagMetadata(
+                2,
+                "testTag",
+                0,
+                new VectorF(60.25f, 35.41f, 4f), DistanceUnit.INCH,
+                new Quaternion(0.3536f, -0.6124f, 0.6124f, -0.3536f, 0));
+        detection = new AprilTagDetection(
+                2,
+                0,
+                0,
+                null,
+                null,
+                metadata,
+                new AprilTagPoseFtc(0, 0, 0, -20, 0, 0, 30, -15, 0),
+                null,
+                0);
+        detections = Arrays.asList(detection, detection, detection);
+        estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        cachedEstimator = new AprilTagPoseEstimator(
+                new Pose2d(-7.77, 0.505, 0),
+                new AprilTagLibrary.Builder().addTag(metadata).build());
+    }
+
+    @Benchmark
+    public Object estimatePose() {
+        return estimator.estimatePose(detection);
+    }
+
+    @Benchmark
+    public double[] estimatePosePrimitive() {
+        estimator.estimatePose(detection, pose);
+        return pose;
+    }
+
+    @Benchmark
+    public double[] estimatePosePrimitiveCached() {
+        cachedEstimator.estimatePose(detection, pose);
+        return pose;
+    }
+
+    @Benchmark
+    public double[] estimatePosesBatch() {
+        estimator.estimatePoses(detections, poses);
+        return poses;
+    }
+}
@@ -0,0 +1,45 @@
+package com.tearabite.ielib.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks in this package on a desktop JVM.
+ * They are excluded from the normal unit test run; use {@code ./gradlew test -Pbenchmark}
+ * and optionally {@code -Dbenchmark.include=<regex>} to pick benchmarks.
+ * Throughput, sampled latency percentiles and the GC profiler's allocation rate
+ * (gc.alloc.rate.norm is bytes per operation) are written to build/jmh-results.json.
+ */
+@Tag("benchmark")
+class BenchmarkRunner {
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", BenchmarkRunner.class.getPackage().getName()))
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("build/jmh-results.json")
+                // The Gradle test worker's classpath is not visible to a forked JVM, so run in-process
+                .forks(0);
+
+        new Runner(options.build()).run();
+    }
+}
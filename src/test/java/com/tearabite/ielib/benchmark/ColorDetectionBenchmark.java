@@ -0,0 +1,73 @@
+package com.tearabite.ielib.benchmark;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+
+import com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor;
+import com.tearabite.ielib.vision.VisionTestUtil;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures BasicColorDetectionVisionProcessor.processFrame on synthetic frames.
+ * Each frame holds one large target plus speckle blobs covering the given fraction of the frame,
+ * which are big enough to survive erode/dilate and show up as extra contours.
+ */
+@State(Scope.Thread)
+public class ColorDetectionBenchmark {
+    private static final int SPECKLE_SIZE = 12;
+
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    @Param({ "0", "0.01", "0.05" })
+    public double noise;
+
+    @Param({ "Hsv", "LookupTable" })
+    public BasicColorDetectionVisionProcessor.SegmentationMode segmentationMode;
+
+    @Param({ "Contours", "Components" })
+    public BasicColorDetectionVisionProcessor.DetectionMode detectionMode;
+
+    private BasicColorDetectionVisionProcessor processor;
+    private Mat frame;
+    private long captureTimeNanos;
+
+    @Setup
+    public void setup() {
+        VisionTestUtil.loadOpenCV();
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+
+        frame = blankFrame(width, height);
+        fillRect(frame, new Rect(width / 3, height / 3, width / 4, height / 4), RGB_BLUE);
+        Random random = new Random(42);
+        int speckles = (int) (noise * width * height / (SPECKLE_SIZE * SPECKLE_SIZE));
+        for (int i = 0; i < speckles; i++) {
+            int x = random.nextInt(width - SPECKLE_SIZE);
+            int y = random.nextInt(height - SPECKLE_SIZE);
+            fillRect(frame, new Rect(x, y, SPECKLE_SIZE, SPECKLE_SIZE), RGB_BLUE);
+        }
+
+        processor = BasicColorDetectionVisionProcessor.Blue();
+        processor.init(width, height, null);
+        processor.setMaximumAreaThreshold(width * height);
+        processor.setSegmentationMode(segmentationMode);
+        processor.setDetectionMode(detectionMode);
+    }
+
+    @Benchmark
+    public Object processFrame() {
+        return processor.processFrame(frame, captureTimeNanos++);
+    }
+}
@@ -0,0 +1,64 @@
+package com.tearabite.ielib.benchmark;
+
+import com.tearabite.ielib.vision.OpenCVUtil;
+import com.tearabite.ielib.vision.VisionTestUtil;
+
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures OpenCVUtil's largest contour selection over lists of random rectangular contours.
+ */
+@State(Scope.Thread)
+public class ContourSelectionBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int contourCount;
+
+    private final List<MatOfPoint> contours = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        VisionTestUtil.loadOpenCV();
+        Random random = new Random(42);
+        for (int i = 0; i < contourCount; i++) {
+            int x = random.nextInt(600);
+            int y = random.nextInt(440);
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(40);
+            contours.add(new MatOfPoint(
+                    new Point(x, y),
+                    new Point(x + width, y),
+                    new Point(x + width, y + height),
+                    new Point(x, y + height)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+    }
+
+    @Benchmark
+    public Object getLargestContour() {
+        return OpenCVUtil.getLargestContour(contours);
+    }
+
+    @Benchmark
+    public Object getLargestContours() {
+        return OpenCVUtil.getLargestContours(contours, 3);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tearabite.ielib.benchmark;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+
+import com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor;
+import com.tearabite.ielib.vision.VisionTestUtil;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares serial segmentation with segmentation in parallel strips.
+ * OpenCV may already parallelize some operations internally, so the gain on a desktop can differ
+ * from the gain on a Control Hub; run it on the target where possible.
+ */
+@State(Scope.Thread)
+public class ParallelSegmentationBenchmark {
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    @Param({ "0", "2", "4" })
+    public int parallelStrips;
+
+    @Param({ "Hsv", "LookupTable" })
+    public BasicColorDetectionVisionProcessor.SegmentationMode segmentationMode;
+
+    private BasicColorDetectionVisionProcessor processor;
+    private Mat frame;
+    private long captureTimeNanos;
+
+    @Setup
+    public void setup() {
+        VisionTestUtil.loadOpenCV();
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+
+        frame = blankFrame(width, height);
+        fillRect(frame, new Rect(width / 3, height / 4, width / 4, height / 2), RGB_BLUE);
+
+        processor = BasicColorDetectionVisionProcessor.Blue();
+        processor.init(width, height, null);
+        processor.setMaximumAreaThreshold(width * height);
+        processor.setSegmentationMode(segmentationMode);
+        processor.setParallelStrips(parallelStrips);
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.close();
+        frame.release();
+    }
+
+    @Benchmark
+    public Object processFrame() {
+        return processor.processFrame(frame, captureTimeNanos++);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tearabite.ielib.benchmark;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+
+import com.tearabite.ielib.vision.PixelBuffer;
+import com.tearabite.ielib.vision.PixelKernel;
+import com.tearabite.ielib.vision.PixelKernelExecutor;
+import com.tearabite.ielib.vision.PixelKernels;
+import com.tearabite.ielib.vision.VisionTestUtil;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares a weighted color threshold written against Mat.get/put copies with the same logic as a
+ * PixelKernel over direct buffers: after one native copy of the frame, with the frame already in a
+ * buffer (as when an OpenCV stage writes straight into it), and in parallel.
+ */
+@State(Scope.Thread)
+public class PixelKernelBenchmark {
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private Mat frame;
+    private Mat mask;
+    private byte[] pixels;
+    private byte[] maskPixels;
+    private PixelBuffer input;
+    private PixelBuffer output;
+    private PixelKernel kernel;
+    private PixelKernelExecutor executor;
+
+    @Setup
+    public void setup() {
+        VisionTestUtil.loadOpenCV();
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+
+        frame = blankFrame(width, height);
+        Core.randu(frame, 0, 256);
+        mask = new Mat(height, width, CvType.CV_8UC1);
+        pixels = new byte[width * height * 3];
+        maskPixels = new byte[width * height];
+        input = new PixelBuffer().copyFrom(frame);
+        output = new PixelBuffer();
+        kernel = PixelKernels.weightedThreshold(-1, 0, 1, 40);
+        executor = new PixelKernelExecutor(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public Mat matGetPut() {
+        frame.get(0, 0, pixels);
+        for (int i = 0, p = 0; i < maskPixels.length; i++, p += 3) {
+            int score = 256 * (pixels[p + 2] & 0xFF) - 256 * (pixels[p] & 0xFF);
+            maskPixels[i] = score > 256 * 40 ? (byte) 255 : 0;
+        }
+        mask.put(0, 0, maskPixels);
+        return mask;
+    }
+
+    @Benchmark
+    public Mat kernelWithCopy() {
+        input.copyFrom(frame);
+        executor.run(kernel, input, output);
+        return output.getMat();
+    }
+
+    @Benchmark
+    public Mat kernelInPlace() {
+        executor.run(kernel, input, output);
+        return output.getMat();
+    }
+}
@@ -1,6 +1,9 @@
 package com.tearabite.ielib.localization;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.acmerobotics.roadrunner.geometry.Pose2d;
@@ -9,6 +12,7 @@ import org.firstinspires.ftc.robotcore.external.matrices.VectorF;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
 import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagLibrary;
 import org.firstinspires.ftc.vision.apriltag.AprilTagMetadata;
 import org.firstinspires.ftc.vision.apriltag.AprilTagPoseFtc;
 import org.junit.jupiter.api.Test;
@@ -17,6 +21,8 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Stream;
 
 class AprilTagPoseEstimatorTest {
@@ -31,7 +37,7 @@ class AprilTagPoseEstimatorTest {
     @Test
     public void estimatePose_null_throws() {
         AprilTagPoseEstimator estimator = new AprilTagPoseEstimator();
-        assertThrows(InvalidParameterException.class, () -> estimator.estimatePose(null));
+        assertThrows(InvalidParameterException.class, () -> estimator.estimatePose((AprilTagDetection) null));
     }
 
     @ParameterizedTest
@@ -54,6 +60,263 @@ class AprilTagPoseEstimatorTest {
         assertIsClose(estimatedPose, expectedPose);
     }
 
+    @ParameterizedTest
+    @MethodSource("provideEstimatePosTestValues")
+    public void estimatePosePrimitive_notNull_matchesPose(AprilTagMetadata metadata, AprilTagPoseFtc poseFtc, Pose2d robotOffsets, Pose2d expectedPose) {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(robotOffsets);
+        double[] out = new double[3];
+
+        estimator.estimatePose(detection(metadata, poseFtc), out);
+
+        assertIsClose(new Pose2d(out[0], out[1], out[2]), expectedPose);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideRotatedTagValues")
+    public void estimatePosePrimitive_rotatedTag_matchesCore(double tagHeadingDegrees, AprilTagPoseFtc poseFtc, Pose2d robotOffset) {
+        AprilTagMetadata rotated = rotatedTag(tagHeadingDegrees);
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(robotOffset);
+        double[] out = new double[3];
+
+        estimator.estimatePose(detection(rotated, poseFtc), out);
+
+        assertIsCloseOnCircle(new Pose2d(out[0], out[1], out[2]), corePose(estimator, rotated, poseFtc, robotOffset));
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideRotatedTagValues")
+    public void estimatePosePrimitive_rotatedLibraryTag_matchesCore(double tagHeadingDegrees, AprilTagPoseFtc poseFtc, Pose2d robotOffset) {
+        AprilTagMetadata rotated = rotatedTag(tagHeadingDegrees);
+        AprilTagLibrary library = new AprilTagLibrary.Builder().addTag(rotated).build();
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(robotOffset, library);
+        double[] out = new double[3];
+
+        estimator.estimatePose(detection(rotated.id, null, poseFtc), out);
+
+        assertIsCloseOnCircle(new Pose2d(out[0], out[1], out[2]), corePose(estimator, rotated, poseFtc, robotOffset));
+    }
+
+    @Test
+    public void estimatePoses_mixedDetections_skipsUnusable() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        List<AprilTagDetection> detections = Arrays.asList(
+                detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0)),
+                detection(null, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0)),
+                detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, -45, 0)));
+        double[] out = new double[9];
+
+        int count = estimator.estimatePoses(detections, out);
+
+        assertEquals(2, count);
+        assertIsClose(new Pose2d(out[0], out[1], out[2]), new Pose2d(28.5, 35.9, 0));
+        assertIsClose(new Pose2d(out[3], out[4], out[5]), new Pose2d(35.5, 52.9, 0));
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideEstimatePosTestValues")
+    public void estimatePose_tagLibrary_matchesMetadata(AprilTagMetadata metadata, AprilTagPoseFtc poseFtc, Pose2d robotOffsets, Pose2d expectedPose) {
+        AprilTagLibrary library = new AprilTagLibrary.Builder().addTag(metadata).build();
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(robotOffsets, library);
+        AprilTagDetection detection = detection(metadata.id, null, poseFtc);
+        double[] out = new double[3];
+
+        estimator.estimatePose(detection, out);
+
+        assertIsClose(new Pose2d(out[0], out[1], out[2]), expectedPose);
+        assertIsClose(estimator.estimatePose(detection), expectedPose);
+    }
+
+    @Test
+    public void estimatePose_metadataDisagreesWithLibrary_bothPathsUseLibrary() {
+        AprilTagLibrary library = new AprilTagLibrary.Builder().addTag(metadata).build();
+        Pose2d robotOffset = new Pose2d(-7.77, 0.505, 0);
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(robotOffset, library);
+        AprilTagPoseFtc poseFtc = new AprilTagPoseFtc(0, 0, 0, -45, 0, 0, 24, -45, 0);
+        AprilTagDetection detection = detection(metadata.id, rotatedTag(90), poseFtc);
+        double[] out = new double[3];
+
+        estimator.estimatePose(detection, out);
+
+        Pose2d expected = corePose(estimator, metadata, poseFtc, robotOffset);
+        assertIsCloseOnCircle(new Pose2d(out[0], out[1], out[2]), expected);
+        assertIsCloseOnCircle(estimator.estimatePose(detection), expected);
+        assertIsCloseOnCircle(estimator.estimatePose(Arrays.asList(detection)).getPose(), expected);
+    }
+
+    @Test
+    public void estimatePoses_metadataWithoutOrientation_isSkipped() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        AprilTagMetadata noOrientation = new AprilTagMetadata(metadata.id, metadata.name, metadata.tagsize,
+                metadata.fieldPosition, DistanceUnit.INCH, null);
+        List<AprilTagDetection> detections = Arrays.asList(
+                detection(noOrientation, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0)),
+                detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0)));
+        double[] out = new double[6];
+
+        int count = estimator.estimatePoses(detections, out);
+
+        assertEquals(1, count);
+        assertIsClose(new Pose2d(out[0], out[1], out[2]), new Pose2d(28.5, 35.9, 0));
+        assertEquals(1, estimator.estimatePose(detections).getTagsUsed());
+    }
+
+    @Test
+    public void setRobotOffset_tagLibrary_rebuildsTable() {
+        AprilTagLibrary library = new AprilTagLibrary.Builder().addTag(metadata).build();
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(null, library);
+        AprilTagDetection detection = detection(metadata.id, null, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0));
+
+        estimator.setRobotOffset(new Pose2d(-7.77, 0.505, Math.PI));
+
+        assertIsClose(estimator.estimatePose(detection), new Pose2d(44.0, 34.9, Math.PI));
+    }
+
+    @Test
+    public void setTagLibrary_null_requiresMetadata() {
+        AprilTagLibrary library = new AprilTagLibrary.Builder().addTag(metadata).build();
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(null, library);
+        AprilTagDetection detection = detection(metadata.id, null, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0));
+
+        estimator.setTagLibrary(null);
+
+        assertThrows(InvalidParameterException.class, () -> estimator.estimatePose(detection));
+    }
+
+    @Test
+    public void estimatePoseList_null_throws() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator();
+        assertThrows(InvalidParameterException.class, () -> estimator.estimatePose((List<AprilTagDetection>) null));
+    }
+
+    @Test
+    public void estimatePoseList_noUsableDetections_returnsNull() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d());
+        assertNull(estimator.estimatePose(Arrays.asList(detection(null, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0)))));
+    }
+
+    @Test
+    public void estimatePoseList_singleDetection_matchesSingleEstimate() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        AprilTagDetection detection = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, -45, 0));
+
+        FusedPoseEstimate fused = estimator.estimatePose(Arrays.asList(detection));
+
+        assertIsClose(fused.getPose(), estimator.estimatePose(detection));
+        assertEquals(1, fused.getTagsUsed());
+        assertEquals(0, fused.getTagsRejected());
+        assertTrue(fused.getConfidence() > 0);
+    }
+
+    @Test
+    public void estimatePoseList_outlier_isRejected() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        AprilTagDetection near = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0));
+        AprilTagDetection far = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 25, 0, 0));
+        AprilTagDetection outlier = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 48, 0, 0));
+
+        FusedPoseEstimate fused = estimator.estimatePose(Arrays.asList(near, outlier, far));
+
+        assertEquals(2, fused.getTagsUsed());
+        assertEquals(1, fused.getTagsRejected());
+        assertIsClose(fused.getPose(), new Pose2d(28.0, 35.9, 0));
+    }
+
+    @Test
+    public void estimatePoseList_closerTag_weighsMore() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(-7.77, 0.505, 0));
+        AprilTagDetection near = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 12, 0, 0));
+        AprilTagDetection far = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 16, 0, 0));
+
+        FusedPoseEstimate fused = estimator.estimatePose(Arrays.asList(near, far));
+
+        double nearX = estimator.estimatePose(near).getX();
+        double farX = estimator.estimatePose(far).getX();
+        assertTrue(Math.abs(fused.getPose().getX() - nearX) < Math.abs(fused.getPose().getX() - farX));
+    }
+
+    @Test
+    public void estimatePoseList_headingsAcrossPi_averageOnCircle() {
+        AprilTagPoseEstimator estimator = new AprilTagPoseEstimator(new Pose2d(8.9, -1.5, Math.PI));
+        AprilTagDetection left = detection(metadata, new AprilTagPoseFtc(0, 0, 0, 5, 0, 0, 24, 0, 0));
+        AprilTagDetection right = detection(metadata, new AprilTagPoseFtc(0, 0, 0, -5, 0, 0, 24, 0, 0));
+
+        FusedPoseEstimate fused = estimator.estimatePose(Arrays.asList(left, right));
+
+        assertEquals(2, fused.getTagsUsed());
+        assertEquals(Math.PI, Math.abs(fused.getPose().getHeading()), 0.01);
+    }
+
+    private static AprilTagDetection detection(AprilTagMetadata metadata, AprilTagPoseFtc poseFtc) {
+        return detection(1, metadata, poseFtc);
+    }
+
+    private static AprilTagDetection detection(int id, AprilTagMetadata metadata, AprilTagPoseFtc poseFtc) {
+        return new AprilTagDetection(
+                id,
+                0,
+                0,
+                null,
+                null,
+                metadata,
+                poseFtc,
+                null,
+                0);
+    }
+
+    /**
+     * @return the test tag turned about the field's z axis, so it faces a different way on the field
+     */
+    private static AprilTagMetadata rotatedTag(double degrees) {
+        Quaternion q = metadata.fieldOrientation;
+        double half = Math.toRadians(degrees) / 2;
+        float c = (float) Math.cos(half);
+        float s = (float) Math.sin(half);
+        Quaternion rotated = new Quaternion(
+                c * q.w - s * q.z,
+                c * q.x - s * q.y,
+                c * q.y + s * q.x,
+                c * q.z + s * q.w,
+                0);
+        return new AprilTagMetadata(metadata.id, metadata.name, metadata.tagsize,
+                metadata.fieldPosition, DistanceUnit.INCH, rotated);
+    }
+
+    private static Pose2d corePose(AprilTagPoseEstimator estimator, AprilTagMetadata tag, AprilTagPoseFtc poseFtc, Pose2d robotOffset) {
+        return estimator.estimatePose(
+                Math.toRadians(poseFtc.yaw),
+                Math.toRadians(poseFtc.bearing),
+                poseFtc.range,
+                tag.fieldPosition.get(0),
+                tag.fieldPosition.get(1),
+                tag.fieldOrientation.x,
+                tag.fieldOrientation.y,
+                tag.fieldOrientation.z,
+                tag.fieldOrientation.w,
+                robotOffset);
+    }
+
+    private static Stream<Arguments> provideRotatedTagValues() {
+        Stream.Builder<Arguments> values = Stream.builder();
+        double[] tagHeadings = { 90, 180, -90, 30 };
+        AprilTagPoseFtc[] poses = {
+                new AprilTagPoseFtc(0, 0, 0, 0, 0, 0, 24, 0, 0),
+                new AprilTagPoseFtc(0, 0, 0, -45, 0, 0, 24, -45, 0),
+                new AprilTagPoseFtc(0, 0, 0, 20, 0, 0, 36, 10, 0),
+        };
+        Pose2d[] offsets = {
+                new Pose2d(-7.77, 0.505, 0),
+                new Pose2d(8.9, -1.5, Math.PI * 3 / 4),
+        };
+        for (double tagHeading : tagHeadings) {
+            for (AprilTagPoseFtc pose : poses) {
+                for (Pose2d offset : offsets) {
+                    values.add(Arguments.of(tagHeading, pose, offset));
+                }
+            }
+        }
+        return values.build();
+    }
+
     private static Stream<Arguments> provideEstimatePosTestValues() {
         return Stream.of(
                 Arguments.of(
@@ -86,6 +349,11 @@ class AprilTagPoseEstimatorTest {
         );
     }
 
+    private void assertIsCloseOnCircle(Pose2d a, Pose2d b) {
+        assertIsClose(a, new Pose2d(b.getX(), b.getY(),
+                a.getHeading() - AprilTagPoseEstimator.angleDifference(a.getHeading(), b.getHeading())));
+    }
+
     private boolean isClose(double a, double b) {
         return Math.abs(a - b) < 0.1;
     }
@@ -0,0 +1,125 @@
+package com.tearabite.ielib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyCompensatedPoseFilterTest {
+
+    private static final long MS = 1_000_000L;
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void getPose_noOdometry_returnsNull() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+
+        assertNull(filter.getPose());
+        assertFalse(filter.getPose(new double[3]));
+    }
+
+    @Test
+    public void addVisionMeasurement_delayedWhileMoving_replaysOdometry() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        // Odometry started at the wrong place: it reads 10 inches short in x and 5 in y
+        for (int i = 0; i <= 20; i++) {
+            filter.updateOdometry(i * 10 * MS, i - 10, -5, 0);
+        }
+
+        // The frame was captured 100 ms ago, when the robot was really at x = 10
+        boolean accepted = filter.addVisionMeasurement(100 * MS, new Pose2d(10, 0, 0));
+
+        assertTrue(accepted);
+        assertIsClose(filter.getPose(), new Pose2d(20, 0, 0));
+    }
+
+    @Test
+    public void addVisionMeasurement_betweenOdometrySamples_interpolates() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        filter.updateOdometry(0, 0, 0, 0);
+        filter.updateOdometry(20 * MS, 2, 0, 0);
+        filter.updateOdometry(40 * MS, 4, 0, 0);
+
+        filter.addVisionMeasurement(10 * MS, new Pose2d(11, 0, 0));
+
+        assertIsClose(filter.getPose(), new Pose2d(14, 0, 0));
+    }
+
+    @Test
+    public void addVisionMeasurement_headingOffset_rotatesReplayedMotion() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        // Odometry believes the robot drives along +x, but it is really driving along +y
+        for (int i = 0; i <= 10; i++) {
+            filter.updateOdometry(i * 10 * MS, i, 0, 0);
+        }
+
+        filter.addVisionMeasurement(0, new Pose2d(0, 0, Math.PI / 2));
+
+        assertIsClose(filter.getPose(), new Pose2d(0, 10, Math.PI / 2));
+    }
+
+    @Test
+    public void addVisionMeasurement_afterFirst_movesByGain() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        filter.setPositionGain(0.5);
+        filter.setHeadingGain(0.5);
+        filter.updateOdometry(0, 0, 0, 0);
+        filter.updateOdometry(10 * MS, 0, 0, 0);
+        filter.addVisionMeasurement(0, new Pose2d(0, 0, 0));
+
+        filter.addVisionMeasurement(10 * MS, new Pose2d(4, -2, 0.2));
+
+        assertIsClose(filter.getPose(), new Pose2d(2, -1, 0.1));
+    }
+
+    @Test
+    public void addVisionMeasurement_lowConfidence_movesLess() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        filter.setPositionGain(0.5);
+        filter.updateOdometry(0, 0, 0, 0);
+        filter.addVisionMeasurement(0, new Pose2d(0, 0, 0));
+
+        filter.addVisionMeasurement(0, new FusedPoseEstimate(new Pose2d(4, 0, 0), 0.5, 1, 1, 1, 1, 0));
+
+        assertIsClose(filter.getPose(), new Pose2d(1, 0, 0));
+    }
+
+    @Test
+    public void addVisionMeasurement_headingAcrossPi_takesShortWay() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter();
+        filter.setHeadingGain(0.5);
+        filter.updateOdometry(0, 0, 0, Math.PI - 0.1);
+        filter.addVisionMeasurement(0, new Pose2d(0, 0, Math.PI - 0.1));
+
+        filter.addVisionMeasurement(0, new Pose2d(0, 0, -Math.PI + 0.1));
+
+        double[] pose = new double[3];
+        filter.getPose(pose);
+        assertEquals(Math.PI, pose[2], EPSILON);
+    }
+
+    @Test
+    public void addVisionMeasurement_olderThanHistory_rejected() {
+        LatencyCompensatedPoseFilter filter = new LatencyCompensatedPoseFilter(4);
+        for (int i = 0; i < 10; i++) {
+            filter.updateOdometry(i * 10 * MS, i, 0, 0);
+        }
+
+        boolean accepted = filter.addVisionMeasurement(20 * MS, new Pose2d(100, 100, 0));
+
+        assertFalse(accepted);
+        assertEquals(1, filter.getRejectedMeasurements());
+        assertFalse(filter.isInitialized());
+        assertIsClose(filter.getPose(), new Pose2d(9, 0, 0));
+    }
+
+    private static void assertIsClose(Pose2d actual, Pose2d expected) {
+        assertEquals(expected.getX(), actual.getX(), EPSILON, "x");
+        assertEquals(expected.getY(), actual.getY(), EPSILON, "y");
+        assertEquals(expected.getHeading(), actual.getHeading(), EPSILON, "heading");
+    }
+}
@@ -0,0 +1,172 @@
+package com.tearabite.ielib.telemetry;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.acmerobotics.roadrunner.geometry.Pose2d;
+import com.tearabite.ielib.localization.FusedPoseEstimate;
+import com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor;
+import com.tearabite.ielib.vision.VisionTestUtil;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+
+class MatchLogTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void record_detectionsAndPoses_readBackInOrder() throws IOException {
+        VisionTestUtil.loadOpenCV();
+        BasicColorDetectionVisionProcessor processor = BasicColorDetectionVisionProcessor.Blue();
+        processor.init(160, 120, null);
+        processor.setMaximumAreaThreshold(160 * 120);
+        Mat frame = blankFrame(160, 120);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+        processor.processFrame(frame, 1000);
+        File file = new File(tempDir, "match.log");
+
+        MatchLog log = new MatchLog(file);
+        log.start();
+        assertTrue(log.record(processor.getLatestResult()));
+        assertTrue(log.recordPose(0, 1000, 7, new Pose2d(1, 2, 0.5)));
+        assertTrue(log.recordPose(0, 1000, new FusedPoseEstimate(new Pose2d(3, 4, 0.25), 0.9, 0.1, 0.2, 0.01, 2, 1)));
+        log.close();
+
+        assertEquals(4, log.getRecordsWritten());
+        assertTrue(file.length() >= MatchLog.FILE_HEADER_BYTES + 4 * MatchLog.RECORD_BYTES);
+        try (MatchLogReader reader = new MatchLogReader(file)) {
+            assertTrue(reader.next());
+            assertEquals(MatchLog.TYPE_FRAME, reader.getType());
+            assertEquals(0, reader.getRecordSequence());
+            assertEquals(1000, reader.getCaptureNanos());
+            assertEquals(1, reader.getCount());
+            assertEquals(160, reader.getValue(0));
+
+            assertTrue(reader.next());
+            assertEquals(MatchLog.TYPE_DETECTION, reader.getType());
+            assertEquals(59.5, reader.getValue(1), 1.0);
+            assertEquals(40, reader.getValue(5));
+
+            assertTrue(reader.next());
+            assertEquals(MatchLog.TYPE_POSE, reader.getType());
+            assertEquals(7, reader.getId());
+            assertEquals(0.5, reader.getValue(2));
+
+            assertTrue(reader.next());
+            assertEquals(MatchLog.TYPE_FUSED_POSE, reader.getType());
+            assertEquals(2, reader.getCount());
+            assertEquals(0.9, reader.getValue(3));
+            assertEquals(3, reader.getRecordSequence());
+
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void record_manyThreads_keepsEveryRecordOrSkipsAndCountsIt() throws Exception {
+        File file = new File(tempDir, "threads.log");
+        final MatchLog log = new MatchLog(file, 256);
+        log.start();
+        final int perThread = 5000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int producer = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    log.recordPose(i, 0, producer, i, 0, 0);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        assertEquals(threads.length * perThread, log.getRecordsWritten() + log.getDroppedRecords());
+        long[] lastSequence = { -1, -1, -1, -1 };
+        long lastRecord = -1;
+        long records = 0;
+        try (MatchLogReader reader = new MatchLogReader(file)) {
+            while (reader.next()) {
+                assertTrue(reader.getRecordSequence() > lastRecord);
+                assertTrue(reader.getSourceSequence() > lastSequence[reader.getId()]);
+                lastRecord = reader.getRecordSequence();
+                lastSequence[reader.getId()] = reader.getSourceSequence();
+                records++;
+            }
+        }
+        assertEquals(log.getRecordsWritten(), records);
+    }
+
+    @Test
+    public void record_ringFullBeforeStart_dropsNewRecords() throws IOException {
+        MatchLog log = new MatchLog(new File(tempDir, "full.log"), 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(log.recordPose(i, 0, -1, 0, 0, 0));
+        }
+        assertFalse(log.recordPose(4, 0, -1, 0, 0, 0));
+        assertFalse(log.recordPoses(5, 0, new int[] { 1, 2 }, new double[6], 2));
+
+        assertEquals(3, log.getDroppedRecords());
+        log.start();
+        log.close();
+        assertEquals(4, log.getRecordsWritten());
+    }
+
+    @Test
+    public void next_closedLog_stopsAtRecordCount() throws IOException {
+        File file = new File(tempDir, "count.log");
+        MatchLog log = new MatchLog(file);
+        log.start();
+        log.recordPose(0, 0, 1, 0, 0, 0);
+        log.close();
+        // Nothing in the unused end of the last mapped window is read as a record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(MatchLog.FILE_HEADER_BYTES + MatchLog.RECORD_BYTES + 32);
+            raf.writeInt(MatchLog.TYPE_POSE);
+        }
+
+        int records = 0;
+        try (MatchLogReader reader = new MatchLogReader(file)) {
+            while (reader.next()) {
+                records++;
+            }
+        }
+        assertEquals(1, records);
+    }
+
+    @Test
+    public void exportCsv_writesHeaderAndOneLinePerRecord() throws IOException {
+        File file = new File(tempDir, "csv.log");
+        MatchLog log = new MatchLog(file);
+        log.start();
+        log.recordPoses(3, 50, new int[] { 1, 2 }, new double[] { 1, 2, 3, 4, 5, 6 }, 2);
+        log.close();
+
+        StringWriter csv = new StringWriter();
+        try (MatchLogReader reader = new MatchLogReader(file)) {
+            reader.exportCsv(csv);
+        }
+
+        String[] lines = csv.toString().split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("recordSequence,sourceSequence,captureNanos"));
+        assertTrue(lines[2].startsWith("1,3,50,"));
+        assertTrue(lines[2].contains(",Pose,1,2,2,4.0,5.0,6.0,"));
+    }
+}
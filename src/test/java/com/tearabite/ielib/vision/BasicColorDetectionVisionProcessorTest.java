@@ -0,0 +1,345 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.currentThreadAllocatedBytes;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+class BasicColorDetectionVisionProcessorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static BasicColorDetectionVisionProcessor newBlueProcessor() {
+        BasicColorDetectionVisionProcessor processor = BasicColorDetectionVisionProcessor.Blue();
+        processor.init(WIDTH, HEIGHT, null);
+        processor.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        return processor;
+    }
+
+    @Test
+    public void processFrame_blueRectangle_detectsCenter() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        processor.processFrame(frame, 0);
+
+        assertTrue(processor.getDetection().isValid());
+        Point center = processor.getDetection().getCenter();
+        assertEquals(59.5, center.x, 1.0);
+        assertEquals(44.5, center.y, 1.0);
+    }
+
+    @Test
+    public void processFrame_nextFrame_releasesPreviousContour() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        processor.processFrame(frame, 0);
+        MatOfPoint first = processor.getDetection().getContour();
+        assertFalse(first.empty());
+
+        processor.processFrame(frame, 1);
+
+        assertTrue(first.empty());
+        assertFalse(processor.getDetection().getContour().empty());
+    }
+
+    @Test
+    public void processFrame_maxDetections_returnsLargestFirst() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setMaxDetections(2);
+        processor.setMinimumAreaThreshold(50);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(10, 10, 20, 20), RGB_BLUE);
+        fillRect(frame, new Rect(60, 40, 40, 30), RGB_BLUE);
+        fillRect(frame, new Rect(120, 90, 30, 20), RGB_BLUE);
+        fillRect(frame, new Rect(140, 10, 6, 6), RGB_BLUE);
+
+        processor.processFrame(frame, 0);
+
+        List<Detection> detections = processor.getDetections();
+        assertEquals(2, detections.size());
+        assertSame(processor.getDetection(), detections.get(0));
+        assertEquals(79.5, detections.get(0).getCenter().x, 1.0);
+        assertEquals(134.5, detections.get(1).getCenter().x, 1.0);
+        assertTrue(detections.get(0).getArea() > detections.get(1).getArea());
+    }
+
+    @Test
+    public void processFrame_tracking_reportsFullResolutionCoordinates() {
+        BasicColorDetectionVisionProcessor tracking = newBlueProcessor();
+        tracking.setTrackingEnabled(true);
+        BasicColorDetectionVisionProcessor fullFrame = newBlueProcessor();
+
+        for (int step = 0; step < 10; step++) {
+            Mat frame = blankFrame(WIDTH, HEIGHT);
+            fillRect(frame, new Rect(20 + step * 8, 30 + step * 3, 30, 24), RGB_BLUE);
+
+            tracking.processFrame(frame, step);
+            fullFrame.processFrame(frame, step);
+
+            assertTrue(tracking.getDetection().isValid());
+            assertEquals(fullFrame.getDetection().getCenter().x, tracking.getDetection().getCenter().x, 0.01);
+            assertEquals(fullFrame.getDetection().getCenter().y, tracking.getDetection().getCenter().y, 0.01);
+            assertEquals(fullFrame.getDetection().getArea(), tracking.getDetection().getArea(), 0.01);
+        }
+    }
+
+    @Test
+    public void processFrame_trackingLost_fallsBackToFullFrameSearch() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setTrackingEnabled(true);
+        Mat first = blankFrame(WIDTH, HEIGHT);
+        fillRect(first, new Rect(10, 10, 30, 24), RGB_BLUE);
+        Mat second = blankFrame(WIDTH, HEIGHT);
+        fillRect(second, new Rect(110, 80, 30, 24), RGB_BLUE);
+
+        processor.processFrame(first, 0);
+        processor.processFrame(second, 1);
+
+        assertTrue(processor.getDetection().isValid());
+        assertEquals(124.5, processor.getDetection().getCenter().x, 1.0);
+        assertEquals(91.5, processor.getDetection().getCenter().y, 1.0);
+    }
+
+    @Test
+    public void processFrame_frameSkipping_reusesResultUntilSceneChanges() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setFrameSkippingEnabled(true);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        processor.processFrame(frame, 100);
+        processor.processFrame(frame, 101);
+        processor.processFrame(frame, 102);
+
+        assertEquals(2, processor.getSkippedFrames());
+        assertEquals(2, processor.getConsecutiveSkippedFrames());
+        // Skipped frames don't publish, so the result still describes the frame that was processed
+        DetectionResult reused = processor.getLatestResult();
+        assertEquals(0, reused.getSequence());
+        assertEquals(100, reused.getCaptureTimeNanos());
+        assertEquals(59.5, reused.getCenterX(), 1.0);
+        long lastSequence = reused.getSequence();
+
+        Mat moved = blankFrame(WIDTH, HEIGHT);
+        fillRect(moved, new Rect(90, 60, 40, 30), RGB_BLUE);
+        processor.processFrame(moved, 103);
+
+        assertEquals(2, processor.getSkippedFrames());
+        assertEquals(0, processor.getConsecutiveSkippedFrames());
+        DetectionResult processed = processor.getLatestResult();
+        assertTrue(processed.isNewerThan(lastSequence));
+        assertEquals(1, processed.getSequence());
+        assertEquals(103, processed.getCaptureTimeNanos());
+        assertEquals(109.5, processed.getCenterX(), 1.0);
+    }
+
+    @Test
+    public void processFrame_frameSkipping_processesAfterMaxConsecutiveSkips() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setFrameSkippingEnabled(true);
+        processor.setMaxConsecutiveSkippedFrames(3);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+
+        for (int i = 0; i < 9; i++) {
+            processor.processFrame(frame, i);
+        }
+
+        // Frames 0, 4 and 8 are processed and the three after each are skipped
+        assertEquals(6, processor.getSkippedFrames());
+        assertEquals(0, processor.getConsecutiveSkippedFrames());
+    }
+
+    @Test
+    public void getLatestResult_afterFrames_returnsNewestSnapshot() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        assertEquals(-1, processor.getLatestResult().getSequence());
+
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+        processor.processFrame(frame, 100);
+        DetectionResult first = processor.getLatestResult();
+
+        assertEquals(0, first.getSequence());
+        assertEquals(100, first.getCaptureTimeNanos());
+        assertTrue(first.isValid());
+        assertEquals(59.5, first.getCenterX(), 1.0);
+        assertSame(first, processor.getLatestResult());
+
+        processor.processFrame(blankFrame(WIDTH, HEIGHT), 200);
+        DetectionResult second = processor.getLatestResult();
+
+        assertTrue(second.isNewerThan(first.getSequence()));
+        assertEquals(200, second.getCaptureTimeNanos());
+        assertFalse(second.isValid());
+    }
+
+    @Test
+    public void isNewerThan_afterSnapshotIsRecycled_comparesKeptSequence() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        processor.processFrame(frame, 0);
+        DetectionResult first = processor.getLatestResult();
+        long lastSequence = first.getSequence();
+
+        for (int i = 1; i <= 3; i++) {
+            processor.processFrame(frame, i);
+            processor.getLatestResult();
+        }
+        DetectionResult latest = processor.getLatestResult();
+
+        // The first snapshot's slot has been reused for a newer frame, so comparing against it would miss the update
+        assertEquals(latest.getSequence(), first.getSequence());
+        assertTrue(latest.isNewerThan(lastSequence));
+        assertFalse(latest.isNewerThan(latest.getSequence()));
+    }
+
+    @Test
+    public void processFrame_statsEnabled_recordsEveryStage() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setStatsEnabled(true);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        for (int i = 0; i < 10; i++) {
+            processor.processFrame(frame, System.nanoTime());
+        }
+
+        VisionStats stats = processor.getStats();
+        for (VisionStats.Stage stage : VisionStats.Stage.values()) {
+            assertEquals(10, stats.getHistogram(stage).getCount());
+        }
+        assertEquals(10, stats.getAgeHistogram().getCount());
+        assertTrue(stats.getHistogram(VisionStats.Stage.Total).getMaxNanos() > 0);
+
+        processor.setStatsEnabled(false);
+        assertNull(processor.getStats());
+    }
+
+    @Test
+    public void processFrame_components_matchesContourGeometry() {
+        BasicColorDetectionVisionProcessor components = newBlueProcessor();
+        components.setDetectionMode(BasicColorDetectionVisionProcessor.DetectionMode.Components);
+        components.setMaxDetections(2);
+        BasicColorDetectionVisionProcessor contours = newBlueProcessor();
+        contours.setMaxDetections(2);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+        fillRect(frame, new Rect(110, 80, 20, 20), RGB_BLUE);
+
+        components.processFrame(frame, 0);
+        contours.processFrame(frame, 0);
+
+        List<Detection> expected = contours.getDetections();
+        List<Detection> actual = components.getDetections();
+        assertEquals(2, actual.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected.get(i).getBoundingRect(), actual.get(i).getBoundingRect());
+            assertEquals(expected.get(i).getCenter().x, actual.get(i).getCenter().x, 0.5);
+            assertEquals(expected.get(i).getCenter().y, actual.get(i).getCenter().y, 0.5);
+        }
+        // Components count the pixels, contours measure the polygon through the outer pixel centers
+        assertEquals(40 * 30, actual.get(0).getArea(), 0.01);
+        assertEquals(39 * 29, expected.get(0).getArea(), 0.01);
+    }
+
+    @Test
+    public void processFrame_components_tracesContourOnlyWhenAsked() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        processor.setDetectionMode(BasicColorDetectionVisionProcessor.DetectionMode.Components);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        processor.processFrame(frame, 0);
+        Detection detection = processor.getDetection();
+
+        assertTrue(detection.isValid());
+        assertNull(detection.getContourIfPresent());
+        MatOfPoint contour = detection.getContour();
+        assertEquals(4, contour.total());
+        assertEquals(new Rect(40, 30, 40, 30), Imgproc.boundingRect(contour));
+
+        processor.processFrame(frame, 1);
+
+        assertTrue(contour.empty());
+        assertNull(processor.getDetection().getContourIfPresent());
+    }
+
+    @Test
+    public void processFrame_componentsTracking_reportsFullResolutionCoordinates() {
+        BasicColorDetectionVisionProcessor tracking = newBlueProcessor();
+        tracking.setTrackingEnabled(true);
+        tracking.setDetectionMode(BasicColorDetectionVisionProcessor.DetectionMode.Components);
+        BasicColorDetectionVisionProcessor fullFrame = newBlueProcessor();
+        fullFrame.setDetectionMode(BasicColorDetectionVisionProcessor.DetectionMode.Components);
+
+        for (int step = 0; step < 10; step++) {
+            Mat frame = blankFrame(WIDTH, HEIGHT);
+            fillRect(frame, new Rect(20 + step * 8, 30 + step * 3, 30, 24), RGB_BLUE);
+
+            tracking.processFrame(frame, step);
+            fullFrame.processFrame(frame, step);
+
+            assertTrue(tracking.getDetection().isValid());
+            assertEquals(fullFrame.getDetection().getBoundingRect(), tracking.getDetection().getBoundingRect());
+            assertEquals(fullFrame.getDetection().getCenter().x, tracking.getDetection().getCenter().x, 0.01);
+            assertEquals(fullFrame.getDetection().getArea(), tracking.getDetection().getArea(), 0.01);
+            assertEquals(fullFrame.getDetection().getBoundingRect(), Imgproc.boundingRect(tracking.getDetection().getContour()));
+        }
+    }
+
+    @Test
+    public void processFrame_thousandsOfFrames_allocationStaysFlat() {
+        BasicColorDetectionVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+        fillRect(frame, new Rect(100, 80, 10, 10), RGB_BLUE);
+
+        for (int i = 0; i < 500; i++) {
+            processor.processFrame(frame, i);
+        }
+
+        int frames = 2500;
+        long start = currentThreadAllocatedBytes();
+        for (int i = 0; i < frames; i++) {
+            processor.processFrame(frame, i);
+        }
+        long middle = currentThreadAllocatedBytes();
+        for (int i = 0; i < frames; i++) {
+            processor.processFrame(frame, i);
+        }
+        long end = currentThreadAllocatedBytes();
+
+        // The only heap allocation left per frame is inside the findContours Java binding
+        double firstHalfPerFrame = (middle - start) / (double) frames;
+        double secondHalfPerFrame = (end - middle) / (double) frames;
+        assertTrue(firstHalfPerFrame < 2048, String.format("Allocated %.0f bytes per frame", firstHalfPerFrame));
+        assertTrue(secondHalfPerFrame <= firstHalfPerFrame * 1.1 + 64,
+                String.format("Allocation grew from %.0f to %.0f bytes per frame", firstHalfPerFrame, secondHalfPerFrame));
+        assertTrue(processor.getDetection().isValid());
+    }
+}
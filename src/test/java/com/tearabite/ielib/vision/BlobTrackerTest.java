@@ -0,0 +1,150 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class BlobTrackerTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static Detection detection(int x, int y, int width, int height) {
+        MatOfPoint contour = new MatOfPoint(
+                new Point(x, y),
+                new Point(x, y + height),
+                new Point(x + width, y + height),
+                new Point(x + width, y));
+        return Detection.builder()
+                .contour(contour)
+                .frameSize(new Size(WIDTH, HEIGHT))
+                .minAreaThreshold(0)
+                .maxAreaThreshold(WIDTH * HEIGHT)
+                .build();
+    }
+
+    @Test
+    public void update_movingBlobs_keepsIds() {
+        BlobTracker tracker = new BlobTracker();
+        tracker.update(Arrays.asList(detection(10, 10, 20, 20), detection(100, 60, 20, 20)));
+        int left = tracker.getDetectionTrackId(0);
+        int right = tracker.getDetectionTrackId(1);
+        assertNotEquals(left, right);
+
+        for (int step = 1; step <= 5; step++) {
+            // Swap the order so IDs can't just follow the list position
+            tracker.update(Arrays.asList(detection(100 - 4 * step, 60, 20, 20), detection(10 + 6 * step, 10, 20, 20)));
+
+            assertEquals(right, tracker.getDetectionTrackId(0));
+            assertEquals(left, tracker.getDetectionTrackId(1));
+        }
+        assertEquals(2, tracker.getTrackCount());
+    }
+
+    @Test
+    public void update_constantVelocity_predictsNextPosition() {
+        BlobTracker tracker = new BlobTracker();
+
+        for (int step = 0; step < 4; step++) {
+            tracker.update(Collections.singletonList(detection(10 + 5 * step, 20 + 2 * step, 20, 10)));
+        }
+
+        assertEquals(5, tracker.getVelocityX(0), 1e-9);
+        assertEquals(2, tracker.getVelocityY(0), 1e-9);
+        assertEquals(40, tracker.getPredictedX(0), 1e-9);
+        assertEquals(33, tracker.getPredictedY(0), 1e-9);
+        // The contour's bounding box is 21 x 11 since it includes both edges
+        Rect bounds = new Rect();
+        assertTrue(tracker.getPredictedBounds(bounds));
+        assertEquals(new Rect(29, 27, 22, 12), bounds);
+    }
+
+    @Test
+    public void update_missedFrames_coastsThenDrops() {
+        BlobTracker tracker = new BlobTracker();
+        tracker.setMaxMissedFrames(2);
+        tracker.update(Collections.singletonList(detection(10, 10, 20, 20)));
+        tracker.update(Collections.singletonList(detection(20, 10, 20, 20)));
+        int id = tracker.getDetectionTrackId(0);
+        List<Detection> none = Collections.emptyList();
+
+        tracker.update(none);
+        assertTrue(tracker.hasMissedTracks());
+        tracker.update(none);
+
+        // Coasted twice at 10 px per frame, so the blob is expected at 50 and matches there
+        tracker.update(Collections.singletonList(detection(50, 10, 20, 20)));
+        assertEquals(id, tracker.getDetectionTrackId(0));
+        assertFalse(tracker.hasMissedTracks());
+
+        tracker.update(none);
+        tracker.update(none);
+        tracker.update(none);
+        assertEquals(0, tracker.getTrackCount());
+        assertFalse(tracker.getPredictedBounds(new Rect()));
+
+        tracker.update(Collections.singletonList(detection(50, 10, 20, 20)));
+        assertNotEquals(id, tracker.getDetectionTrackId(0));
+    }
+
+    @Test
+    public void update_tooFar_startsNewTrack() {
+        BlobTracker tracker = new BlobTracker();
+        tracker.setMaxMatchDistance(20);
+        tracker.update(Collections.singletonList(detection(10, 10, 20, 20)));
+        int id = tracker.getDetectionTrackId(0);
+
+        tracker.update(Collections.singletonList(detection(60, 10, 20, 20)));
+
+        assertNotEquals(id, tracker.getDetectionTrackId(0));
+        assertEquals(2, tracker.getTrackCount());
+    }
+
+    @Test
+    public void processFrame_fullDetectionInterval_findsNewBlobWhileTracking() {
+        BasicColorDetectionVisionProcessor processor = BasicColorDetectionVisionProcessor.Blue();
+        processor.init(WIDTH, HEIGHT, null);
+        processor.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        processor.setMaxDetections(2);
+        processor.setTrackingEnabled(true);
+        processor.setFullDetectionInterval(3);
+
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(10, 10, 30, 24), RGB_BLUE);
+        processor.processFrame(frame, 0);
+        int id = processor.getLatestResult().getTrackId(0);
+
+        // A second blob appears far from the first; the region update alone can't see it
+        fillRect(frame, new Rect(120, 90, 24, 20), RGB_BLUE);
+        int frames = 0;
+        while (processor.getLatestResult().getDetectionCount() < 2) {
+            processor.processFrame(frame, ++frames);
+            assertTrue(frames <= 3, "The new blob should be found within the full detection interval");
+        }
+
+        DetectionResult result = processor.getLatestResult();
+        assertEquals(id, result.getTrackId(0));
+        assertNotEquals(id, result.getTrackId(1));
+    }
+}
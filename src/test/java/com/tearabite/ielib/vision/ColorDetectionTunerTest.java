@@ -0,0 +1,157 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class ColorDetectionTunerTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static List<LabeledFrame> labeledFrames() {
+        List<LabeledFrame> frames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Rect target = new Rect(20 + 25 * i, 30 + 10 * i, 32, 24);
+            Mat frame = blankFrame(WIDTH, HEIGHT);
+            fillRect(frame, target, RGB_BLUE);
+            frames.add(new LabeledFrame(frame, target));
+        }
+        frames.add(new LabeledFrame(blankFrame(WIDTH, HEIGHT), null));
+        return frames;
+    }
+
+    private static String key(ColorDetectionTuner.Config config) {
+        return config.getBlurSize() + "," + config.getErodeDilateIterations() + "," + config.getDownscale();
+    }
+
+    private static ColorDetectionTuner newTuner() {
+        ColorDetectionTuner tuner = new ColorDetectionTuner(BasicColorDetectionVisionProcessor::Blue, labeledFrames());
+        tuner.setBlurSizes(new int[] { 3, 7 });
+        tuner.setErodeDilateIterations(new int[] { 0, 2 });
+        tuner.setMinimumAreaThresholds(new double[] { 0, 2000 });
+        tuner.setTrackingModes(new boolean[] { false, true });
+        tuner.setPyramidLevels(new int[] { 1 });
+        tuner.setDownscales(new double[] { 1, 0.5 });
+        tuner.setWarmupPasses(1);
+        tuner.setMeasuredPasses(2);
+        return tuner;
+    }
+
+    @Test
+    public void run_grid_scoresEveryCombination() {
+        List<ColorDetectionTuner.Result> results = newTuner().run();
+
+        assertEquals(32, results.size());
+        Map<String, Double> untrackedIou = new HashMap<>();
+        for (ColorDetectionTuner.Result result : results) {
+            assertTrue(result.getMeanLatencyNanos() > 0);
+            assertTrue(result.getP95LatencyNanos() > 0);
+            assertEquals(0, result.getFalsePositives());
+            if (result.getConfig().getMinimumAreaThreshold() > 0) {
+                // Every target is 768 pixels, so a 2000 pixel minimum rejects them all
+                assertEquals(4, result.getMisses());
+                assertEquals(0, result.getMeanIou(), 1e-9);
+            } else if (!result.getConfig().isTrackingEnabled()) {
+                assertEquals(0, result.getMisses());
+                assertTrue(result.getMeanIou() > 0.8, "IoU " + result.getMeanIou());
+                assertTrue(result.getMeanCentroidError() < 2, "Centroid error " + result.getMeanCentroidError());
+                untrackedIou.put(key(result.getConfig()), result.getMeanIou());
+            }
+        }
+
+        int tracking = 0;
+        for (ColorDetectionTuner.Result result : results) {
+            ColorDetectionTuner.Config config = result.getConfig();
+            if (!config.isTrackingEnabled() || config.getMinimumAreaThreshold() > 0) {
+                continue;
+            }
+
+            assertEquals(1, config.getPyramidLevels());
+            tracking++;
+            // Each target stays inside the refine region around the last one, so tracking only misses when
+            // the candidate search does. At a 0.5 downscale its pyrDown turns the 16x12 targets into 8x6 blobs, which two erode
+            // iterations with the 5x5 kernel remove entirely, so no candidate is ever found.
+            if (config.getDownscale() < 1 && config.getErodeDilateIterations() > 0) {
+                assertEquals(4, result.getMisses());
+                assertEquals(0, result.getMeanIou(), 1e-9);
+            } else {
+                assertEquals(0, result.getMisses());
+                assertEquals(untrackedIou.get(key(config)), result.getMeanIou(), 0.02);
+            }
+        }
+        assertEquals(8, tracking);
+    }
+
+    @Test
+    public void paretoFrontier_results_keepsOnlyUndominated() {
+        List<ColorDetectionTuner.Result> results = newTuner().run();
+
+        List<ColorDetectionTuner.Result> frontier = ColorDetectionTuner.paretoFrontier(results);
+
+        assertFalse(frontier.isEmpty());
+        for (ColorDetectionTuner.Result candidate : frontier) {
+            for (ColorDetectionTuner.Result other : results) {
+                boolean dominates = other.getMeanLatencyNanos() <= candidate.getMeanLatencyNanos()
+                        && other.getMeanIou() >= candidate.getMeanIou()
+                        && (other.getMeanLatencyNanos() < candidate.getMeanLatencyNanos() || other.getMeanIou() > candidate.getMeanIou());
+                assertFalse(dominates);
+            }
+        }
+        for (int i = 1; i < frontier.size(); i++) {
+            assertTrue(frontier.get(i).getMeanLatencyNanos() >= frontier.get(i - 1).getMeanLatencyNanos());
+            assertTrue(frontier.get(i).getMeanIou() > frontier.get(i - 1).getMeanIou());
+        }
+    }
+
+    @Test
+    public void fastestMeeting_accuracyBar_returnsAccurateResult() {
+        List<ColorDetectionTuner.Result> results = newTuner().run();
+
+        ColorDetectionTuner.Result fastest = ColorDetectionTuner.fastestMeeting(results, 0.8, 2);
+
+        assertNotNull(fastest);
+        assertEquals(0, fastest.getConfig().getMinimumAreaThreshold(), 0);
+        assertNull(ColorDetectionTuner.fastestMeeting(results, 1.1, 2));
+    }
+
+    @Test
+    public void iou_rects_matchesOverlap() {
+        assertEquals(1, ColorDetectionTuner.iou(new Rect(0, 0, 10, 10), new Rect(0, 0, 10, 10)), 1e-9);
+        assertEquals(50.0 / 150, ColorDetectionTuner.iou(new Rect(0, 0, 10, 10), new Rect(5, 0, 10, 10)), 1e-9);
+        assertEquals(0, ColorDetectionTuner.iou(new Rect(0, 0, 10, 10), new Rect(20, 20, 5, 5)), 1e-9);
+    }
+
+    @Test
+    public void formatReport_results_hasLinePerResult() {
+        List<ColorDetectionTuner.Result> results = newTuner().run();
+
+        String report = ColorDetectionTuner.formatReport(results);
+
+        String[] lines = report.split("\n");
+        assertEquals(results.size() + 1, lines.length);
+        // The default maximum area is unlimited, and pyramid levels only apply to tracking
+        assertTrue(lines[1].startsWith("3,0,0,inf,false,,"), lines[1]);
+        assertTrue(report.contains(",inf,true,1,"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.FTCColors.FTC_BLUE_RANGE;
+import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_1;
+import static com.tearabite.ielib.vision.FTCColors.FTC_RED_RANGE_2;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_RED;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_WHITE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.stream.Stream;
+
+class ColorLookupTableTest {
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static Stream<Arguments> provideColorRanges() {
+        return Stream.of(
+                Arguments.of((Object) new ScalarRange[] { FTC_BLUE_RANGE }),
+                Arguments.of((Object) new ScalarRange[] { FTC_RED_RANGE_1, FTC_RED_RANGE_2 }));
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideColorRanges")
+    public void apply_solidColors_matchesHsvPath(ScalarRange[] colorRanges) {
+        Mat frame = blankFrame(90, 30);
+        fillRect(frame, new Rect(0, 0, 30, 30), RGB_RED);
+        fillRect(frame, new Rect(30, 0, 30, 30), RGB_BLUE);
+        fillRect(frame, new Rect(60, 0, 30, 30), RGB_WHITE);
+
+        Mat expected = hsvMask(frame, colorRanges);
+        Mat actual = new Mat();
+        new ColorLookupTable(colorRanges).apply(frame, actual);
+
+        assertEquals(0, countDifferences(expected, actual));
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideColorRanges")
+    public void apply_randomFrame_agreesWithHsvPath(ScalarRange[] colorRanges) {
+        Core.setRNGSeed(42);
+        Mat frame = new Mat(240, 320, CvType.CV_8UC3);
+        Core.randu(frame, 0, 256);
+
+        Mat expected = hsvMask(frame, colorRanges);
+        Mat actual = new Mat();
+        new ColorLookupTable(colorRanges).apply(frame, actual);
+
+        // Only pixels that quantize into a cell straddling a range boundary may differ
+        double disagreement = countDifferences(expected, actual) / (double) frame.total();
+        assertTrue(disagreement < 0.03, String.format("%.2f%% of pixels disagree", disagreement * 100));
+    }
+
+    private static Mat hsvMask(Mat rgb, ScalarRange[] colorRanges) {
+        Mat hsv = new Mat();
+        Mat rangeMask = new Mat();
+        Mat mask = Mat.zeros(rgb.size(), CvType.CV_8UC1);
+        Imgproc.cvtColor(rgb, hsv, Imgproc.COLOR_RGB2HSV);
+        for (ScalarRange colorRange : colorRanges) {
+            Core.inRange(hsv, colorRange.getLower(), colorRange.getUpper(), rangeMask);
+            Core.bitwise_or(mask, rangeMask, mask);
+        }
+        return mask;
+    }
+
+    private static int countDifferences(Mat a, Mat b) {
+        Mat difference = new Mat();
+        Core.compare(a, b, difference, Core.CMP_NE);
+        return Core.countNonZero(difference);
+    }
+}
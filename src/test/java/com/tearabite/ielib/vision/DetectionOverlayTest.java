@@ -0,0 +1,115 @@
+package com.tearabite.ielib.vision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tearabite.ielib.graphics.OverlayRenderer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+
+import java.util.Collections;
+import java.util.List;
+
+class DetectionOverlayTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static List<Detection> square() {
+        MatOfPoint contour = new MatOfPoint(
+                new Point(20, 40),
+                new Point(20, 60),
+                new Point(40, 60),
+                new Point(40, 40));
+        return Collections.singletonList(Detection.builder()
+                .contour(contour)
+                .frameSize(new Size(WIDTH, HEIGHT))
+                .minAreaThreshold(0)
+                .maxAreaThreshold(WIDTH * HEIGHT)
+                .build());
+    }
+
+    private static DetectionResult result(boolean copyContours) {
+        List<Detection> detections = square();
+        BlobTracker tracker = new BlobTracker();
+        tracker.update(detections);
+        DetectionResult result = new DetectionResult();
+        result.update(0, 0, 0, WIDTH, HEIGHT, detections, tracker, copyContours);
+        return result;
+    }
+
+    @Test
+    public void add_boundingBoxes_scalesToCanvas() {
+        DetectionOverlay overlay = new DetectionOverlay();
+        OverlayRenderer renderer = overlay.getRenderer();
+
+        renderer.begin(0.5f, 2);
+        overlay.add(result(false));
+
+        assertEquals(16, renderer.getLineFloatCount());
+        assertEquals(2, renderer.getPointFloatCount());
+        assertEquals(0, renderer.getLabelCount());
+        assertArrayEquals(new float[] { 15, 25 }, renderer.getPointFloats(new float[2]));
+        float[] lines = renderer.getLineFloats(new float[16]);
+        // The bounding box includes both edges, so it is 21 pixels across
+        assertArrayEquals(new float[] { 10, 20, 20.5f, 20 }, new float[] { lines[0], lines[1], lines[2], lines[3] });
+    }
+
+    @Test
+    public void add_ids_addsLabels() {
+        DetectionOverlay overlay = new DetectionOverlay();
+        overlay.setDetailLevel(DetectionOverlay.DetailLevel.Ids);
+
+        overlay.getRenderer().begin(1, 1);
+        overlay.add(result(false));
+
+        assertEquals(1, overlay.getRenderer().getLabelCount());
+    }
+
+    @Test
+    public void add_contours_drawsContourInsteadOfBox() {
+        DetectionOverlay overlay = new DetectionOverlay();
+        overlay.setDetailLevel(DetectionOverlay.DetailLevel.Contours);
+        DetectionResult result = result(overlay.needsContours());
+
+        overlay.getRenderer().begin(1, 1);
+        overlay.add(result);
+
+        assertTrue(result.hasContours());
+        assertEquals(4, result.getContourPointCount(0));
+        assertEquals(4 * 4, overlay.getRenderer().getLineFloatCount());
+        float[] lines = overlay.getRenderer().getLineFloats(new float[16]);
+        assertArrayEquals(new float[] { 40, 40, 20, 40 }, new float[] { lines[0], lines[1], lines[2], lines[3] });
+    }
+
+    @Test
+    public void add_none_drawsNothing() {
+        DetectionOverlay overlay = new DetectionOverlay();
+        overlay.setDetailLevel(DetectionOverlay.DetailLevel.None);
+
+        overlay.getRenderer().begin(1, 1);
+        overlay.add(result(false));
+
+        assertEquals(0, overlay.getRenderer().getLineFloatCount());
+        assertEquals(0, overlay.getRenderer().getPointFloatCount());
+    }
+
+    @Test
+    public void update_withoutContours_hasNoContours() {
+        DetectionResult result = result(false);
+
+        assertFalse(result.hasContours());
+        assertEquals(0, result.getContourPointCount(0));
+    }
+}
@@ -0,0 +1,205 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+class FrameRecorderTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    @Test
+    public void replay_recordedFrames_matchesOriginalRun() throws Exception {
+        File file = new File(tempDir, "frames.bin");
+        BasicColorDetectionVisionProcessor live = BasicColorDetectionVisionProcessor.Blue();
+        live.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        FrameRecorder recorder = new FrameRecorder(live, file, 8);
+        recorder.init(WIDTH, HEIGHT, null);
+        List<Point> liveCenters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            recorder.processFrame(frame(i), 1000L * i);
+            liveCenters.add(live.getDetection().getCenter().clone());
+        }
+        recorder.close();
+
+        BasicColorDetectionVisionProcessor replayed = BasicColorDetectionVisionProcessor.Blue();
+        replayed.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        List<Point> replayedCenters = new ArrayList<>();
+        VisionProcessor capturing = new ForwardingProcessor(replayed) {
+            @Override
+            public Object processFrame(Mat input, long captureTimeNanos) {
+                Object result = super.processFrame(input, captureTimeNanos);
+                replayedCenters.add(replayed.getDetection().getCenter().clone());
+                return result;
+            }
+        };
+        try (FrameReplayer replayer = new FrameReplayer(file)) {
+            int count = replayer.replay(capturing, false);
+
+            assertEquals(5, count);
+        }
+
+        assertNull(recorder.getError());
+        assertEquals(5, recorder.getFramesRecorded());
+        assertEquals(liveCenters, replayedCenters);
+    }
+
+    @Test
+    public void next_recordedFrames_roundTripsPixelsAndTimes() throws Exception {
+        File file = new File(tempDir, "frames.bin");
+        ForwardingProcessor sink = new ForwardingProcessor(null);
+        FrameRecorder recorder = new FrameRecorder(sink, file, 8);
+        recorder.init(WIDTH, HEIGHT, null);
+        Mat first = frame(1);
+        Mat second = frame(2);
+        recorder.processFrame(first, 123456789L);
+        recorder.processFrame(second.submat(new Rect(10, 10, 50, 40)), 223456789L);
+        recorder.close();
+
+        try (FrameReplayer replayer = new FrameReplayer(file)) {
+            Mat read = new Mat();
+
+            assertTrue(replayer.next(read));
+            assertEquals(123456789L, replayer.getCaptureTimeNanos());
+            assertEquals(0, Core.norm(first, read, Core.NORM_INF));
+
+            assertTrue(replayer.next(read));
+            assertEquals(223456789L, replayer.getCaptureTimeNanos());
+            assertEquals(0, Core.norm(second.submat(new Rect(10, 10, 50, 40)), read, Core.NORM_INF));
+
+            assertFalse(replayer.next(read));
+            assertEquals(2, replayer.getFramesRead());
+
+            replayer.rewind();
+            assertTrue(replayer.next(read));
+            assertEquals(123456789L, replayer.getCaptureTimeNanos());
+        }
+        assertEquals(2, sink.frames);
+    }
+
+    @Test
+    public void next_truncatedLastFrame_stopsBeforeIt() throws Exception {
+        File file = new File(tempDir, "frames.bin");
+        FrameRecorder recorder = new FrameRecorder(new ForwardingProcessor(null), file, 8);
+        recorder.init(WIDTH, HEIGHT, null);
+        recorder.processFrame(frame(0), 1);
+        recorder.processFrame(frame(1), 2);
+        recorder.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+
+        try (FrameReplayer replayer = new FrameReplayer(file)) {
+            Mat read = new Mat();
+
+            assertTrue(replayer.next(read));
+            assertFalse(replayer.next(read));
+        }
+    }
+
+    @Test
+    public void processFrame_writerBehind_dropsAndCountsFrames() throws Exception {
+        File file = new File(tempDir, "frames.bin");
+        ForwardingProcessor sink = new ForwardingProcessor(null);
+        FrameRecorder recorder = new FrameRecorder(sink, file, 1);
+        recorder.init(640, 480, null);
+        Mat frame = blankFrame(640, 480);
+        for (int i = 0; i < 50; i++) {
+            recorder.processFrame(frame, i);
+        }
+        recorder.close();
+
+        assertNull(recorder.getError());
+        assertEquals(50, sink.frames);
+        assertEquals(50, recorder.getFramesRecorded() + recorder.getFramesDropped());
+        try (FrameReplayer replayer = new FrameReplayer(file)) {
+            Mat read = new Mat();
+            long lastCaptureTime = -1;
+            int count = 0;
+            while (replayer.next(read)) {
+                assertTrue(replayer.getCaptureTimeNanos() > lastCaptureTime);
+                lastCaptureTime = replayer.getCaptureTimeNanos();
+                count++;
+            }
+            assertEquals(recorder.getFramesRecorded(), count);
+        }
+    }
+
+    @Test
+    public void constructor_notARecording_throws() throws Exception {
+        File file = new File(tempDir, "other.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        }
+
+        assertThrows(IOException.class, () -> new FrameReplayer(file));
+    }
+
+    private static Mat frame(int i) {
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(10 + 20 * i, 20 + 5 * i, 30, 25), RGB_BLUE);
+        return frame;
+    }
+
+    /**
+     * Passes frames on to another processor, if there is one, and counts them.
+     */
+    private static class ForwardingProcessor implements VisionProcessor {
+        private final VisionProcessor processor;
+        int frames;
+
+        ForwardingProcessor(VisionProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void init(int width, int height, CameraCalibration calibration) {
+            if (processor != null) {
+                processor.init(width, height, calibration);
+            }
+        }
+
+        @Override
+        public Object processFrame(Mat input, long captureTimeNanos) {
+            frames++;
+            return processor == null ? null : processor.processFrame(input, captureTimeNanos);
+        }
+
+        @Override
+        public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.MultiColorDetectionVisionProcessor.BLUE;
+import static com.tearabite.ielib.vision.MultiColorDetectionVisionProcessor.RED;
+import static com.tearabite.ielib.vision.MultiColorDetectionVisionProcessor.WHITE;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_RED;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+class MultiColorDetectionVisionProcessorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    @Test
+    public void processFrame_redAndBlue_matchesSingleColorProcessors() {
+        MultiColorDetectionVisionProcessor multi = MultiColorDetectionVisionProcessor.RedBlueWhite();
+        multi.init(WIDTH, HEIGHT, null);
+        multi.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        BasicColorDetectionVisionProcessor red = BasicColorDetectionVisionProcessor.Red();
+        red.init(WIDTH, HEIGHT, null);
+        red.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        BasicColorDetectionVisionProcessor blue = BasicColorDetectionVisionProcessor.Blue();
+        blue.init(WIDTH, HEIGHT, null);
+        blue.setMaximumAreaThreshold(WIDTH * HEIGHT);
+
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(10, 20, 40, 30), RGB_RED);
+        fillRect(frame, new Rect(90, 60, 30, 40), RGB_BLUE);
+        multi.processFrame(frame, 0);
+        red.processFrame(frame, 0);
+        blue.processFrame(frame, 0);
+
+        DetectionResult redResult = multi.getLatestResult(RED);
+        DetectionResult blueResult = multi.getLatestResult(BLUE);
+        assertTrue(redResult.isValid());
+        assertTrue(blueResult.isValid());
+        assertFalse(multi.getLatestResult(WHITE).isValid());
+        assertEquals(red.getLatestResult().getCenterX(), redResult.getCenterX(), 0.01);
+        assertEquals(red.getLatestResult().getArea(), redResult.getArea(), 0.01);
+        assertEquals(blue.getLatestResult().getCenterX(), blueResult.getCenterX(), 0.01);
+        assertEquals(blue.getLatestResult().getArea(), blueResult.getArea(), 0.01);
+    }
+
+    @Test
+    public void addColorClass_duplicateName_throws() {
+        MultiColorDetectionVisionProcessor multi = MultiColorDetectionVisionProcessor.RedBlueWhite();
+        assertThrows(IllegalArgumentException.class, () -> multi.addColorClass(RED, FTCColors.FTC_RED_RANGE_1));
+    }
+}
@@ -0,0 +1,128 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+class PipelineVisionProcessorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static PipelineVisionProcessor newBlueProcessor() {
+        PipelineVisionProcessor processor = PipelineVisionProcessor.colorDetection(FTCColors.FTC_BLUE_RANGE);
+        processor.init(WIDTH, HEIGHT, null);
+        processor.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        return processor;
+    }
+
+    @Test
+    public void processFrame_blueRectangle_matchesBasicProcessor() {
+        PipelineVisionProcessor pipeline = newBlueProcessor();
+        BasicColorDetectionVisionProcessor basic = BasicColorDetectionVisionProcessor.Blue();
+        basic.init(WIDTH, HEIGHT, null);
+        basic.setMaximumAreaThreshold(WIDTH * HEIGHT);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        pipeline.processFrame(frame, 0);
+        basic.processFrame(frame, 0);
+
+        assertEquals(1, pipeline.getLatestResult().getDetectionCount());
+        Point expected = basic.getDetection().getCenter();
+        assertEquals(expected.x, pipeline.getLatestResult().getCenterX(0), 1e-9);
+        assertEquals(expected.y, pipeline.getLatestResult().getCenterY(0), 1e-9);
+        assertEquals(basic.getDetection().getArea(), pipeline.getLatestResult().getArea(0), 1e-9);
+    }
+
+    @Test
+    public void processFrame_afterFirstFrame_allocatesNoMats() {
+        PipelineVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        processor.processFrame(frame, 0);
+        int allocated = processor.getPool().getAllocatedCount();
+        for (int i = 1; i < 10; i++) {
+            processor.processFrame(frame, i);
+        }
+
+        assertEquals(allocated, processor.getPool().getAllocatedCount());
+        // Two color buffers for blur and conversion, the mask, and the threshold's scratch mask
+        assertEquals(4, allocated);
+    }
+
+    @Test
+    public void processFrame_recordsEveryStage() {
+        PipelineVisionProcessor processor = newBlueProcessor();
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+
+        processor.processFrame(frame, 0);
+        processor.processFrame(frame, 1);
+
+        assertEquals(4, processor.getStageCount());
+        assertEquals("Blur", processor.getStageName(0));
+        assertEquals("Contours", processor.getStageName(4));
+        for (int i = 0; i <= processor.getStageCount(); i++) {
+            assertEquals(2, processor.getStageHistogram(i).getCount());
+        }
+        assertEquals(2, processor.getTotalHistogram().getCount());
+    }
+
+    @Test
+    public void processFrame_inPlaceStage_receivesSameMat() {
+        final Mat[] seen = new Mat[2];
+        PipelineVisionProcessor processor = PipelineVisionProcessor.colorDetection(FTCColors.FTC_BLUE_RANGE)
+                .addStage(new VisionStage() {
+                    @Override
+                    public String getName() {
+                        return "Identity";
+                    }
+
+                    @Override
+                    public int getOutputType(int inputType) {
+                        return inputType;
+                    }
+
+                    @Override
+                    public boolean canRunInPlace() {
+                        return true;
+                    }
+
+                    @Override
+                    public void apply(Mat input, Mat output) {
+                        seen[0] = input;
+                        seen[1] = output;
+                    }
+                });
+        processor.init(WIDTH, HEIGHT, null);
+
+        processor.processFrame(blankFrame(WIDTH, HEIGHT), 0);
+
+        assertSame(seen[0], seen[1]);
+    }
+
+    @Test
+    public void processFrame_lastStageNotMask_throws() {
+        PipelineVisionProcessor processor = new PipelineVisionProcessor().addStage(VisionStages.rgbToHsv());
+        processor.init(WIDTH, HEIGHT, null);
+
+        assertThrows(IllegalStateException.class, () -> processor.processFrame(blankFrame(WIDTH, HEIGHT), 0));
+        assertTrue(processor.getPool().getAllocatedCount() > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+class PixelKernelExecutorTest {
+
+    private static final int WIDTH = 161;
+    private static final int HEIGHT = 117;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static Mat noiseFrame() {
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        Core.randu(frame, 0, 256);
+        fillRect(frame, new Rect(30, 20, 50, 40), RGB_BLUE);
+        return frame;
+    }
+
+    /**
+     * The same score computed from a Mat.get copy, as custom pixel code did before.
+     */
+    private static byte[] referenceMask(Mat frame) {
+        byte[] pixels = new byte[WIDTH * HEIGHT * 3];
+        byte[] mask = new byte[WIDTH * HEIGHT];
+        frame.get(0, 0, pixels);
+        for (int i = 0; i < mask.length; i++) {
+            int r = pixels[i * 3] & 0xFF;
+            int b = pixels[i * 3 + 2] & 0xFF;
+            mask[i] = 256 * b - 256 * r > 256 * 40 ? (byte) 255 : 0;
+        }
+        return mask;
+    }
+
+    private static byte[] bytes(PixelBuffer buffer) {
+        byte[] bytes = new byte[buffer.getRows() * buffer.getStep()];
+        buffer.getMat().get(0, 0, bytes);
+        return bytes;
+    }
+
+    @Test
+    public void copyFrom_sharesMemoryWithMat() {
+        PixelBuffer buffer = new PixelBuffer().copyFrom(noiseFrame());
+
+        buffer.getBuffer().put(buffer.getIndex(2, 3) + 1, (byte) 77);
+
+        byte[] pixel = new byte[3];
+        buffer.getMat().get(2, 3, pixel);
+        assertEquals(77, pixel[1]);
+        assertEquals(WIDTH * 3, buffer.getStep());
+    }
+
+    @Test
+    public void getMat_asOpenCVDestination_fillsBufferWithoutCopy() {
+        Mat frame = noiseFrame();
+        PixelBuffer hsv = new PixelBuffer().create(HEIGHT, WIDTH, CvType.CV_8UC3);
+        Mat mat = hsv.getMat();
+
+        Imgproc.cvtColor(frame, hsv.getMat(), Imgproc.COLOR_RGB2HSV);
+
+        hsv.checkAttached();
+        assertSame(mat, hsv.getMat());
+        Mat expected = new Mat();
+        Imgproc.cvtColor(frame, expected, Imgproc.COLOR_RGB2HSV);
+        byte[] expectedBytes = new byte[WIDTH * HEIGHT * 3];
+        expected.get(0, 0, expectedBytes);
+        assertArrayEquals(expectedBytes, bytes(hsv));
+    }
+
+    @Test
+    public void checkAttached_afterOpenCVReallocates_throws() {
+        PixelBuffer buffer = new PixelBuffer().create(HEIGHT, WIDTH, CvType.CV_8UC3);
+
+        Imgproc.cvtColor(noiseFrame(), buffer.getMat(), Imgproc.COLOR_RGB2GRAY);
+
+        assertThrows(IllegalStateException.class, buffer::checkAttached);
+    }
+
+    @Test
+    public void run_serialAndParallel_matchMatGetReference() {
+        Mat frame = noiseFrame();
+        byte[] expected = referenceMask(frame);
+        PixelKernel kernel = PixelKernels.weightedThreshold(-1, 0, 1, 40);
+        PixelBuffer input = new PixelBuffer().copyFrom(frame);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            PixelKernelExecutor executor = new PixelKernelExecutor(threads);
+            PixelBuffer output = new PixelBuffer();
+
+            executor.run(kernel, input, output);
+
+            assertEquals(CvType.CV_8UC1, output.getType());
+            assertArrayEquals(expected, bytes(output), "threads " + threads);
+            executor.close();
+        }
+    }
+
+    @Test
+    public void run_oddTiles_visitEveryPixelOnce() {
+        PixelBuffer input = new PixelBuffer().create(HEIGHT, WIDTH, CvType.CV_8UC1);
+        PixelBuffer output = new PixelBuffer();
+        PixelKernel increment = new PixelKernel() {
+            @Override
+            public int getOutputType(int inputType) {
+                return CvType.CV_8UC1;
+            }
+
+            @Override
+            public void apply(PixelBuffer in, PixelBuffer out, int startRow, int endRow, int startCol, int endCol) {
+                for (int row = startRow; row < endRow; row++) {
+                    for (int col = startCol; col < endCol; col++) {
+                        int i = out.getIndex(row, col);
+                        out.getBuffer().put(i, (byte) (out.getBuffer().get(i) + 1));
+                    }
+                }
+            }
+        };
+        PixelKernelExecutor executor = new PixelKernelExecutor(3);
+        executor.setTileRows(7);
+        executor.setTileCols(13);
+
+        executor.run(increment, input, output);
+
+        assertEquals(WIDTH * HEIGHT, Core.countNonZero(output.getMat()));
+        byte[] ones = new byte[WIDTH * HEIGHT];
+        Arrays.fill(ones, (byte) 1);
+        assertArrayEquals(ones, bytes(output));
+        executor.close();
+    }
+
+    @Test
+    public void run_unsupportedInputType_throws() {
+        PixelKernelExecutor executor = new PixelKernelExecutor(2);
+        PixelBuffer input = new PixelBuffer().create(HEIGHT, WIDTH, CvType.CV_8UC1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> executor.run(PixelKernels.weightedThreshold(1, 1, 1, 0), input, new PixelBuffer()));
+        executor.close();
+    }
+}
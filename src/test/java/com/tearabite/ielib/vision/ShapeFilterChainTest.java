@@ -0,0 +1,112 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+class ShapeFilterChainTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    private static ShapeCandidate candidate(Point... points) {
+        MatOfPoint contour = new MatOfPoint(points);
+        ShapeCandidate candidate = new ShapeCandidate();
+        candidate.reset(contour, Imgproc.contourArea(contour), WIDTH, HEIGHT);
+        return candidate;
+    }
+
+    @Test
+    public void add_sortsByCost() {
+        ShapeFilterChain chain = new ShapeFilterChain()
+                .solidity(0.8, 1)
+                .region(0, 0, 1, 1)
+                .aspectRatio(0.5, 2)
+                .extent(0.5, 1);
+
+        assertEquals("AspectRatio", chain.getFilterName(0));
+        assertEquals("Extent", chain.getFilterName(1));
+        assertEquals("Region", chain.getFilterName(2));
+        assertEquals("Solidity", chain.getFilterName(3));
+    }
+
+    @Test
+    public void test_cheapFilterRejects_skipsExpensiveFilters() {
+        final int[] hullCalls = { 0 };
+        ShapeFilterChain chain = new ShapeFilterChain()
+                .add("Expensive", ShapeFilterChain.Cost.Hull, candidate -> {
+                    hullCalls[0]++;
+                    return true;
+                })
+                .aspectRatio(0.5, 2);
+        // 100 wide and 10 tall
+        ShapeCandidate bar = candidate(new Point(0, 0), new Point(100, 0), new Point(100, 10), new Point(0, 10));
+
+        assertFalse(chain.test(bar));
+
+        assertEquals(0, hullCalls[0]);
+        assertEquals(1, chain.getRejections(0));
+        assertEquals(0, chain.getRejections(1));
+        assertEquals(1, chain.getTested());
+        assertEquals(0, chain.getAccepted());
+    }
+
+    @Test
+    public void getSolidity_lShape_isBelowOne() {
+        ShapeCandidate square = candidate(new Point(0, 0), new Point(20, 0), new Point(20, 20), new Point(0, 20));
+        ShapeCandidate lShape = candidate(new Point(0, 0), new Point(10, 0), new Point(10, 10),
+                new Point(20, 10), new Point(20, 20), new Point(0, 20));
+
+        assertEquals(1, square.getSolidity(), 1e-9);
+        // 300 of the hull's 350
+        assertEquals(300.0 / 350.0, lShape.getSolidity(), 1e-9);
+    }
+
+    @Test
+    public void processFrame_shapeFilters_keepOnlyMatchingBlobs() {
+        for (BasicColorDetectionVisionProcessor.DetectionMode mode : BasicColorDetectionVisionProcessor.DetectionMode.values()) {
+            BasicColorDetectionVisionProcessor processor = BasicColorDetectionVisionProcessor.Blue();
+            processor.init(WIDTH, HEIGHT, null);
+            processor.setMaximumAreaThreshold(WIDTH * HEIGHT);
+            processor.setMaxDetections(5);
+            processor.setDetectionMode(mode);
+            ShapeFilterChain filters = new ShapeFilterChain()
+                    .aspectRatio(0.5, 2)
+                    .solidity(0.9, 1.1);
+            processor.setShapeFilters(filters);
+            Mat frame = blankFrame(WIDTH, HEIGHT);
+            // A square that passes, a long bar and an L shape that don't
+            fillRect(frame, new Rect(10, 10, 30, 30), RGB_BLUE);
+            fillRect(frame, new Rect(60, 10, 90, 12), RGB_BLUE);
+            fillRect(frame, new Rect(60, 50, 20, 60), RGB_BLUE);
+            fillRect(frame, new Rect(80, 90, 40, 20), RGB_BLUE);
+
+            processor.processFrame(frame, 0);
+
+            List<Detection> detections = processor.getDetections();
+            assertEquals(1, detections.size(), mode.name());
+            assertEquals(24.5, detections.get(0).getCenter().x, 1.0, mode.name());
+            assertEquals(3, filters.getTested(), mode.name());
+            assertEquals(1, filters.getRejections(0), mode.name());
+            assertEquals(1, filters.getRejections(1), mode.name());
+            assertEquals(1, filters.getAccepted(), mode.name());
+        }
+    }
+}
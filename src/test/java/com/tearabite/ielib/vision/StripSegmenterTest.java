@@ -0,0 +1,140 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.ANCHOR;
+import static com.tearabite.ielib.vision.BasicColorDetectionVisionProcessor.STRUCTURING_ELEMENT;
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Random;
+
+class StripSegmenterTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final Size BLUR_SIZE = new Size(7, 7);
+
+    @BeforeAll
+    public static void loadOpenCV() {
+        VisionTestUtil.loadOpenCV();
+    }
+
+    /**
+     * A frame of colored noise with blue blocks of every size scattered over it, so blobs cross
+     * every strip boundary and erode/dilate changes pixels near them.
+     */
+    private static Mat syntheticFrame(long seed) {
+        Random random = new Random(seed);
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        Core.randu(frame, 0, 120);
+        for (int i = 0; i < 40; i++) {
+            int width = 2 + random.nextInt(30);
+            int height = 2 + random.nextInt(30);
+            int x = random.nextInt(WIDTH - width);
+            int y = random.nextInt(HEIGHT - height);
+            fillRect(frame, new Rect(x, y, width, height), RGB_BLUE);
+        }
+        return frame;
+    }
+
+    private static Mat serialMask(Mat frame) {
+        Mat blurred = new Mat();
+        Mat hsv = new Mat();
+        Mat mask = new Mat();
+        Imgproc.GaussianBlur(frame, blurred, BLUR_SIZE, 0);
+        Imgproc.cvtColor(blurred, hsv, Imgproc.COLOR_RGB2HSV);
+        OpenCVUtil.inRanges(hsv, new ScalarRange[] { FTCColors.FTC_BLUE_RANGE }, new Mat(), mask);
+        OpenCVUtil.erodeDilate(mask, STRUCTURING_ELEMENT, ANCHOR, 2);
+        return mask;
+    }
+
+    private static int countDifferences(Mat a, Mat b) {
+        Mat difference = new Mat();
+        Core.absdiff(a, b, difference);
+        return Core.countNonZero(difference);
+    }
+
+    @Test
+    public void segment_matchesSerialMask() {
+        ScalarRange[] ranges = { FTCColors.FTC_BLUE_RANGE };
+        for (int strips = 1; strips <= 5; strips++) {
+            StripSegmenter segmenter = new StripSegmenter(strips);
+            for (long seed = 0; seed < 5; seed++) {
+                Mat frame = syntheticFrame(seed);
+                Mat mask = new Mat();
+
+                segmenter.segment(frame, mask, BLUR_SIZE, BasicColorDetectionVisionProcessor.SegmentationMode.Hsv, ranges, null, 2);
+
+                assertEquals(0, countDifferences(serialMask(frame), mask), "strips " + strips + " seed " + seed);
+            }
+            segmenter.close();
+        }
+    }
+
+    @Test
+    public void segment_lookupTable_matchesSerialLookupTable() {
+        ColorLookupTable table = new ColorLookupTable(FTCColors.FTC_BLUE_RANGE);
+        StripSegmenter segmenter = new StripSegmenter(4);
+        Mat frame = syntheticFrame(7);
+        Mat blurred = new Mat();
+        Mat expected = new Mat();
+        Imgproc.GaussianBlur(frame, blurred, BLUR_SIZE, 0);
+        table.apply(blurred, expected);
+        OpenCVUtil.erodeDilate(expected, STRUCTURING_ELEMENT, ANCHOR, 2);
+        Mat mask = new Mat();
+
+        segmenter.segment(frame, mask, BLUR_SIZE, BasicColorDetectionVisionProcessor.SegmentationMode.LookupTable, null, table, 2);
+
+        assertEquals(0, countDifferences(expected, mask));
+        segmenter.close();
+    }
+
+    @Test
+    public void processFrame_parallelStrips_matchesSerialDetections() {
+        BasicColorDetectionVisionProcessor serial = BasicColorDetectionVisionProcessor.Blue();
+        BasicColorDetectionVisionProcessor parallel = BasicColorDetectionVisionProcessor.Blue();
+        for (BasicColorDetectionVisionProcessor processor : new BasicColorDetectionVisionProcessor[] { serial, parallel }) {
+            processor.setMaxDetections(20);
+            processor.setMaximumAreaThreshold(WIDTH * HEIGHT);
+            processor.init(WIDTH, HEIGHT, null);
+        }
+        parallel.setParallelStrips(4);
+        // A tall blob spanning every strip must still come out as one detection
+        Mat frame = blankFrame(WIDTH, HEIGHT);
+        frame.setTo(new Scalar(30, 30, 30));
+        fillRect(frame, new Rect(70, 5, 20, 110), RGB_BLUE);
+        fillRect(frame, new Rect(10, 28, 25, 8), RGB_BLUE);
+        fillRect(frame, new Rect(120, 55, 30, 12), RGB_BLUE);
+
+        serial.processFrame(frame, 0);
+        parallel.processFrame(frame, 0);
+
+        DetectionResult expected = serial.getLatestResult();
+        DetectionResult actual = parallel.getLatestResult();
+        assertEquals(3, actual.getDetectionCount());
+        assertEquals(expected.getDetectionCount(), actual.getDetectionCount());
+        for (int i = 0; i < expected.getDetectionCount(); i++) {
+            assertEquals(expected.getArea(i), actual.getArea(i), 1e-9);
+            assertEquals(expected.getCenterX(i), actual.getCenterX(i), 1e-9);
+            assertEquals(expected.getCenterY(i), actual.getCenterY(i), 1e-9);
+        }
+        parallel.close();
+    }
+
+    @Test
+    public void getOverlap_coversBlurAndMorphology() {
+        // 3 rows of blur, then 2 rows per erode and per dilate iteration of the 5x5 kernel
+        assertEquals(3 + 2 * 2 * 2, StripSegmenter.getOverlap(BLUR_SIZE, 2));
+        assertEquals(3, StripSegmenter.getOverlap(BLUR_SIZE, 0));
+    }
+}
@@ -0,0 +1,194 @@
+package com.tearabite.ielib.vision;
+
+import static com.tearabite.ielib.vision.VisionTestUtil.RGB_BLUE;
+import static com.tearabite.ielib.vision.VisionTestUtil.blankFrame;
+import static com.tearabite.ielib.vision.VisionTestUtil.fillRect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import android.graphics.Canvas;
+
+import com.tearabite.ielib.vision.VisionProcessorScheduler.Priority;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+class VisionProcessorSchedulerTest {
+
+    private static final long MS = 1_000_000;
+
+    /**
+     * A clock that only moves when told to
+     */
+    private static class FakeClock {
+        long now;
+
+        long get() {
+            return now;
+        }
+    }
+
+    /**
+     * A processor that takes a fixed time on the fake clock
+     */
+    private static class FakeProcessor implements VisionProcessor {
+        private final FakeClock clock;
+        private final long costNanos;
+        int frames;
+
+        FakeProcessor(FakeClock clock, long costNanos) {
+            this.clock = clock;
+            this.costNanos = costNanos;
+        }
+
+        @Override
+        public void init(int width, int height, CameraCalibration calibration) {
+        }
+
+        @Override
+        public Object processFrame(Mat frame, long captureTimeNanos) {
+            clock.now += costNanos;
+            frames++;
+            return null;
+        }
+
+        @Override
+        public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight, float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+        }
+    }
+
+    private static void runFrames(VisionProcessorScheduler scheduler, FakeClock clock, int frames, long frameIntervalNanos) {
+        for (int i = 0; i < frames; i++) {
+            long frameStart = clock.now;
+            scheduler.processFrame(null, frameStart);
+            clock.now = Math.max(clock.now, frameStart + frameIntervalNanos);
+        }
+    }
+
+    @Test
+    public void processFrame_overBudget_skipsLowPriorityAndAlwaysRunsCritical() {
+        FakeClock clock = new FakeClock();
+        FakeProcessor critical = new FakeProcessor(clock, 15 * MS);
+        FakeProcessor high = new FakeProcessor(clock, 4 * MS);
+        FakeProcessor low = new FakeProcessor(clock, 8 * MS);
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get)
+                .add("Low", low, Priority.Low, 0)
+                .add("Critical", critical, Priority.Critical, 0)
+                .add("High", high, Priority.High, 0);
+        scheduler.setMaxSkippedFrames(0);
+        scheduler.init(160, 120, null);
+
+        runFrames(scheduler, clock, 10, 50 * MS);
+
+        assertEquals(10, critical.frames);
+        assertEquals(10, high.frames);
+        assertEquals(1, low.frames);
+        assertEquals(9, scheduler.getSkips(0));
+        assertEquals(0, scheduler.getSkips(1));
+        assertEquals(9, scheduler.getOverBudgetFrames());
+        assertEquals(8 * MS, scheduler.getCostNanos(0), 1);
+    }
+
+    @Test
+    public void processFrame_criticalOverBudgetAlone_stillRuns() {
+        FakeClock clock = new FakeClock();
+        FakeProcessor critical = new FakeProcessor(clock, 30 * MS);
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get)
+                .add("Critical", critical, Priority.Critical, 0);
+        scheduler.init(160, 120, null);
+
+        runFrames(scheduler, clock, 5, 50 * MS);
+
+        assertEquals(5, critical.frames);
+        assertEquals(0, scheduler.getOverBudgetFrames());
+    }
+
+    @Test
+    public void processFrame_skippedTooLong_runsAnyway() {
+        FakeClock clock = new FakeClock();
+        FakeProcessor high = new FakeProcessor(clock, 15 * MS);
+        FakeProcessor low = new FakeProcessor(clock, 10 * MS);
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get)
+                .add("High", high, Priority.High, 0)
+                .add("Low", low, Priority.Low, 0);
+        scheduler.setMaxSkippedFrames(3);
+        scheduler.init(160, 120, null);
+
+        // Runs on the first frame, then every fourth after three skips
+        runFrames(scheduler, clock, 9, 50 * MS);
+
+        assertEquals(9, high.frames);
+        assertEquals(3, low.frames);
+        assertEquals(6, scheduler.getSkips(1));
+    }
+
+    @Test
+    public void processFrame_samePriorityOverBudget_takesTurns() {
+        FakeClock clock = new FakeClock();
+        FakeProcessor a = new FakeProcessor(clock, 12 * MS);
+        FakeProcessor b = new FakeProcessor(clock, 12 * MS);
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get)
+                .add("A", a, Priority.Normal, 0)
+                .add("B", b, Priority.Normal, 0);
+        scheduler.setMaxSkippedFrames(0);
+        scheduler.init(160, 120, null);
+
+        runFrames(scheduler, clock, 11, 50 * MS);
+
+        // Both run on the first frame, then they alternate
+        assertEquals(6, a.frames);
+        assertEquals(6, b.frames);
+    }
+
+    @Test
+    public void processFrame_targetRate_runsAtRateOnJitteryFrames() {
+        FakeClock clock = new FakeClock();
+        FakeProcessor everyFrame = new FakeProcessor(clock, MS);
+        FakeProcessor halfRate = new FakeProcessor(clock, MS);
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get)
+                .add("Every frame", everyFrame, Priority.High, 0)
+                .add("Half rate", halfRate, Priority.High, 15);
+        scheduler.init(160, 120, null);
+
+        // 30 fps, with frames arriving a little early or late
+        for (int i = 0; i < 30; i++) {
+            clock.now = i * 33_333_333L + (i % 2 == 0 ? 300_000 : -300_000);
+            scheduler.processFrame(null, clock.now);
+        }
+
+        assertEquals(30, everyFrame.frames);
+        assertEquals(15, halfRate.frames);
+    }
+
+    @Test
+    public void processFrame_colorProcessor_detectsOnSyntheticFrame() {
+        VisionTestUtil.loadOpenCV();
+        BasicColorDetectionVisionProcessor blue = BasicColorDetectionVisionProcessor.Blue();
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(1000 * MS)
+                .add("Blue", blue, Priority.High, 0);
+        scheduler.init(160, 120, null);
+        blue.setMaximumAreaThreshold(160 * 120);
+        Mat frame = blankFrame(160, 120);
+        fillRect(frame, new Rect(40, 30, 40, 30), RGB_BLUE);
+
+        scheduler.processFrame(frame, 0);
+
+        assertEquals(1, scheduler.getRuns(0));
+        assertEquals(1, blue.getLatestResult().getDetectionCount());
+    }
+
+    @Test
+    public void add_afterInit_throws() {
+        FakeClock clock = new FakeClock();
+        VisionProcessorScheduler scheduler = new VisionProcessorScheduler(20 * MS, clock::get);
+        scheduler.init(160, 120, null);
+
+        assertThrows(IllegalStateException.class,
+                () -> scheduler.add("Late", new FakeProcessor(clock, MS), Priority.Low, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new VisionProcessorScheduler(20 * MS).add("Negative", new FakeProcessor(clock, MS), Priority.Low, -1));
+    }
+}
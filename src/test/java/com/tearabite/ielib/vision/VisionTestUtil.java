@@ -0,0 +1,64 @@
+package com.tearabite.ielib.vision;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.lang.reflect.Method;
+
+/**
+ * Helpers shared by the vision tests for loading desktop OpenCV, building synthetic frames
+ * and measuring heap allocation.
+ */
+public class VisionTestUtil {
+    public static final Scalar RGB_BLACK = new Scalar(0, 0, 0);
+    public static final Scalar RGB_BLUE = new Scalar(0, 0, 255);
+    public static final Scalar RGB_RED = new Scalar(255, 0, 0);
+    public static final Scalar RGB_WHITE = new Scalar(255, 255, 255);
+
+    private static boolean loaded;
+
+    /**
+     * Loads the desktop OpenCV native library. Safe to call more than once.
+     */
+    public static synchronized void loadOpenCV() {
+        if (!loaded) {
+            nu.pattern.OpenCV.loadLocally();
+            loaded = true;
+        }
+    }
+
+    /**
+     * @return a new RGB frame of the given size filled with black
+     */
+    public static Mat blankFrame(int width, int height) {
+        return new Mat(height, width, CvType.CV_8UC3, RGB_BLACK);
+    }
+
+    /**
+     * Fills a rectangle of the frame with a solid RGB color.
+     */
+    public static void fillRect(Mat frame, Rect rect, Scalar color) {
+        Imgproc.rectangle(frame, new Point(rect.x, rect.y), new Point(rect.x + rect.width - 1, rect.y + rect.height - 1), color, -1);
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated on the heap so far.
+     * The management API is not part of android.jar, so it is looked up reflectively.
+     */
+    public static long currentThreadAllocatedBytes() {
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean")
+                    .invoke(null);
+            Method getAllocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (long) getAllocatedBytes.invoke(bean, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Thread allocation counters are not available on this JVM", e);
+        }
+    }
+}